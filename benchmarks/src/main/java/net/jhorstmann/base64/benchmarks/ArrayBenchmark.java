@@ -0,0 +1,91 @@
+package net.jhorstmann.base64.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import net.jhorstmann.base64.Base64StreamDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+// byte[], char[] and String entry points of the stream coders and Base64Codec, java.util.Base64 is the baseline
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ArrayBenchmark {
+
+    @Benchmark
+    public int encodeIntoBytes(Payload payload) {
+        return payload.newEncoder().encodeInto(payload.data, payload.encodeOut, 0);
+    }
+
+    @Benchmark
+    public String encodeToString(Payload payload) throws IOException {
+        return payload.newEncoder().encode(payload.data);
+    }
+
+    @Benchmark
+    public int codecEncodeIntoBytes(Payload payload) {
+        return payload.codec().encodeInto(payload.data, payload.encodeOut, 0);
+    }
+
+    @Benchmark
+    public String codecEncodeToString(Payload payload) {
+        return payload.codec().encode(payload.data);
+    }
+
+    @Benchmark
+    public int jdkEncodeIntoBytes(Payload payload) {
+        return payload.jdkEncoder.encode(payload.data, payload.encodeOut);
+    }
+
+    @Benchmark
+    public String jdkEncodeToString(Payload payload) {
+        return payload.jdkEncoder.encodeToString(payload.data);
+    }
+
+    @Benchmark
+    public int decodeIntoBytes(Payload payload) throws IOException {
+        return new Base64StreamDecoder().decodeInto(payload.encodedBytes, payload.decodeOut, 0);
+    }
+
+    @Benchmark
+    public byte[] decodeBytes(Payload payload) throws IOException {
+        return new Base64StreamDecoder().decode(payload.encodedBytes);
+    }
+
+    @Benchmark
+    public byte[] decodeChars(Payload payload) throws IOException {
+        return new Base64StreamDecoder().decode(payload.encodedChars);
+    }
+
+    @Benchmark
+    public byte[] decodeString(Payload payload) throws IOException {
+        return new Base64StreamDecoder().decode(payload.encoded);
+    }
+
+    @Benchmark
+    public int codecDecodeIntoBytes(Payload payload) throws IOException {
+        return payload.codec().decodeInto(payload.encodedBytes, payload.decodeOut, 0);
+    }
+
+    @Benchmark
+    public byte[] codecDecodeString(Payload payload) throws IOException {
+        return payload.codec().decode(payload.encoded);
+    }
+
+    @Benchmark
+    public int jdkDecodeIntoBytes(Payload payload) {
+        return payload.jdkDecoder.decode(payload.encodedBytes, payload.decodeOut);
+    }
+
+    @Benchmark
+    public byte[] jdkDecodeString(Payload payload) {
+        return payload.jdkDecoder.decode(payload.encoded);
+    }
+}
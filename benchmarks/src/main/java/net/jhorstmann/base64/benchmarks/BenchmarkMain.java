@@ -0,0 +1,25 @@
+package net.jhorstmann.base64.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Runs the benchmarks selected on the command line like the JMH main class, always with the gc profiler so every
+// result comes with its allocation rate per operation.
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+        if (options.shouldHelp()) {
+            options.showHelp();
+            return;
+        }
+        Runner runner = new Runner(new OptionsBuilder().parent(options).addProfiler(GCProfiler.class).build());
+        if (options.shouldList()) {
+            runner.list();
+            return;
+        }
+        runner.run();
+    }
+}
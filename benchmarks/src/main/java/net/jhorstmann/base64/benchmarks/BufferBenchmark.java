@@ -0,0 +1,97 @@
+package net.jhorstmann.base64.benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import net.jhorstmann.base64.Base64NIODecoder;
+import net.jhorstmann.base64.Base64StreamDecoder;
+import net.jhorstmann.base64.Base64StreamEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// ByteBuffer entry points for heap and direct buffers, java.util.Base64 only has allocating buffer methods
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class BufferBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Buffers {
+        @Param({"false", "true"})
+        public boolean direct;
+
+        public ByteBuffer data;
+        public ByteBuffer encoded;
+        public ByteBuffer encodeOut;
+        public ByteBuffer decodeOut;
+
+        private ByteBuffer allocate(int capacity) {
+            return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        }
+
+        @Setup(Level.Trial)
+        public void setup(Payload payload) {
+            data = allocate(payload.size);
+            data.put(payload.data);
+            encoded = allocate(payload.encodedBytes.length);
+            encoded.put(payload.encodedBytes);
+            encodeOut = allocate(payload.encodedBytes.length);
+            decodeOut = allocate(payload.size);
+        }
+
+        // the benchmarks consume their input, every invocation starts from the beginning again
+        ByteBuffer rewind(ByteBuffer buffer) {
+            buffer.clear();
+            return buffer;
+        }
+    }
+
+    @Benchmark
+    public int encode(Payload payload, Buffers buffers) {
+        Base64StreamEncoder encoder = payload.newEncoder();
+        ByteBuffer out = buffers.rewind(buffers.encodeOut);
+        return encoder.encode(buffers.rewind(buffers.data), out) + encoder.encodeFinal(out);
+    }
+
+    @Benchmark
+    public int encodeParallel(Payload payload, Buffers buffers) {
+        Base64StreamEncoder encoder = payload.newEncoder();
+        ByteBuffer out = buffers.rewind(buffers.encodeOut);
+        return encoder.encodeParallel(buffers.rewind(buffers.data), out) + encoder.encodeFinal(out);
+    }
+
+    @Benchmark
+    public ByteBuffer jdkEncode(Payload payload, Buffers buffers) {
+        return payload.jdkEncoder.encode(buffers.rewind(buffers.data));
+    }
+
+    @Benchmark
+    public ByteBuffer decode(Buffers buffers) throws IOException {
+        Base64NIODecoder decoder = new Base64NIODecoder();
+        decoder.decode(buffers.rewind(buffers.encoded), buffers.rewind(buffers.decodeOut));
+        decoder.checkComplete();
+        return buffers.decodeOut;
+    }
+
+    @Benchmark
+    public byte[] decodeParallel(Buffers buffers) throws IOException {
+        return new Base64StreamDecoder().decodeParallel(buffers.rewind(buffers.encoded));
+    }
+
+    @Benchmark
+    public ByteBuffer jdkDecode(Payload payload, Buffers buffers) {
+        return payload.jdkDecoder.decode(buffers.rewind(buffers.encoded));
+    }
+}
@@ -0,0 +1,60 @@
+package net.jhorstmann.base64.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The charset coders, decoding bytes with a BASE64 charset encodes them and encoding a string decodes it. The
+// wrapped payloads use BASE64-MIME, the single line ones BASE64URL.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class CharsetBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Text {
+        public Charset charset;
+        public String text;
+
+        @Setup(Level.Trial)
+        public void setup(Payload payload) {
+            charset = Charset.forName(payload.wrapped ? "BASE64-MIME" : "BASE64URL");
+            text = new String(payload.data, charset);
+        }
+    }
+
+    @Benchmark
+    public CharBuffer charsetDecoder(Payload payload, Text text) throws CharacterCodingException {
+        return text.charset.newDecoder().decode(ByteBuffer.wrap(payload.data));
+    }
+
+    @Benchmark
+    public ByteBuffer charsetEncoder(Text text) throws CharacterCodingException {
+        return text.charset.newEncoder().encode(CharBuffer.wrap(text.text));
+    }
+
+    @Benchmark
+    public String newString(Payload payload, Text text) {
+        return new String(payload.data, text.charset);
+    }
+
+    @Benchmark
+    public byte[] getBytes(Text text) {
+        return text.text.getBytes(text.charset);
+    }
+}
@@ -0,0 +1,175 @@
+package net.jhorstmann.base64.benchmarks;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import net.jhorstmann.base64.Base64Alphabet;
+import net.jhorstmann.base64.Base64NIODecoder;
+import net.jhorstmann.base64.Base64StreamDecoder;
+import net.jhorstmann.base64.Base64StreamEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// File to file encoding and decoding through every I/O strategy of the library, java.util.Base64 wraps
+// buffered file streams. The files live in the temporary directory and are removed after each trial.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class FileBenchmark {
+
+    private static final int BUFFER_SIZE = 32 * 1024;
+
+    @State(Scope.Benchmark)
+    public static class Files {
+        @Param({"65536", "1048576", "67108864"})
+        public int size;
+
+        @Param({"false", "true"})
+        public boolean wrapped;
+
+        public File data;
+        public File encoded;
+        public File out;
+
+        public java.util.Base64.Encoder jdkEncoder;
+        public java.util.Base64.Decoder jdkDecoder;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            byte[] bytes = new byte[size];
+            new Random(size).nextBytes(bytes);
+            jdkEncoder = wrapped ? java.util.Base64.getMimeEncoder() : java.util.Base64.getEncoder();
+            jdkDecoder = wrapped ? java.util.Base64.getMimeDecoder() : java.util.Base64.getDecoder();
+            data = File.createTempFile("base64-bench", ".bin");
+            encoded = File.createTempFile("base64-bench", ".b64");
+            out = File.createTempFile("base64-bench", ".out");
+            write(data, bytes);
+            write(encoded, jdkEncoder.encode(bytes));
+        }
+
+        private static void write(File file, byte[] bytes) throws IOException {
+            OutputStream stream = new FileOutputStream(file);
+            try {
+                stream.write(bytes);
+            } finally {
+                stream.close();
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            data.delete();
+            encoded.delete();
+            out.delete();
+        }
+
+        public Base64StreamEncoder newEncoder() {
+            return wrapped ? Base64StreamEncoder.mime() : new Base64StreamEncoder(Base64Alphabet.STANDARD, true);
+        }
+    }
+
+    private static long copy(InputStream in, OutputStream out) throws IOException {
+        try {
+            try {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                long count = 0;
+                int len;
+                while ((len = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, len);
+                    count += len;
+                }
+                return count;
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    @Benchmark
+    public long encode(Files files) throws IOException {
+        files.newEncoder().encode(files.data, files.out);
+        return files.out.length();
+    }
+
+    @Benchmark
+    public long encodeParallel(Files files) throws IOException {
+        files.newEncoder().encodeParallel(files.data, files.out);
+        return files.out.length();
+    }
+
+    @Benchmark
+    public long encodeMapped(Files files) throws IOException {
+        files.newEncoder().encodeMapped(files.data, files.out);
+        return files.out.length();
+    }
+
+    @Benchmark
+    public long jdkEncode(Files files) throws IOException {
+        return copy(new FileInputStream(files.data),
+                files.jdkEncoder.wrap(new BufferedOutputStream(new FileOutputStream(files.out), BUFFER_SIZE)));
+    }
+
+    @Benchmark
+    public long decodeStream(Files files) throws IOException {
+        new Base64StreamDecoder().decode(files.encoded, files.out, BUFFER_SIZE);
+        return files.out.length();
+    }
+
+    @Benchmark
+    public long decodeChannel(Files files) throws IOException {
+        new Base64NIODecoder().decode(files.encoded, files.out, BUFFER_SIZE, false, false);
+        return files.out.length();
+    }
+
+    @Benchmark
+    public long decodeChannelDirect(Files files) throws IOException {
+        new Base64NIODecoder().decode(files.encoded, files.out, BUFFER_SIZE, true, true);
+        return files.out.length();
+    }
+
+    @Benchmark
+    public long decodeMapped(Files files) throws IOException {
+        new Base64NIODecoder().decodeMapped(files.encoded, files.out, BUFFER_SIZE, false);
+        return files.out.length();
+    }
+
+    @Benchmark
+    public long decodeMappedDirect(Files files) throws IOException {
+        new Base64NIODecoder().decodeMapped(files.encoded, files.out, BUFFER_SIZE, true);
+        return files.out.length();
+    }
+
+    @Benchmark
+    public long decodeParallel(Files files) throws IOException {
+        new Base64NIODecoder().decodeParallel(files.encoded, files.out);
+        return files.out.length();
+    }
+
+    @Benchmark
+    public long jdkDecode(Files files) throws IOException {
+        return copy(files.jdkDecoder.wrap(new BufferedInputStream(new FileInputStream(files.encoded), BUFFER_SIZE)),
+                new FileOutputStream(files.out));
+    }
+}
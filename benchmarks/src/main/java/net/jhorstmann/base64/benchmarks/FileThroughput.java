@@ -0,0 +1,311 @@
+package net.jhorstmann.base64.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import net.jhorstmann.base64.Base64NIODecoder;
+import net.jhorstmann.base64.Base64StreamDecoder;
+import net.jhorstmann.base64.Base64StreamEncoder;
+
+// End to end file throughput of every file strategy. Generates a deterministic random corpus and its encoding,
+// runs each strategy for a number of warmup and measured iterations and writes a JSON report with MB/s and
+// timing percentiles, so I/O strategies can be compared on the hardware and storage at hand.
+//
+//     java -cp benchmarks/target/benchmarks.jar net.jhorstmann.base64.benchmarks.FileThroughput \
+//         [--size 256m] [--warmup 2] [--iterations 10] [--seed 42] [--dir /tmp] [--buffer 32k] [--output report.json]
+//
+// Throughput is based on the unencoded size for both directions, one MB is 10^6 bytes.
+public class FileThroughput {
+
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    private long size = 64L * 1024 * 1024;
+    private int warmup = 2;
+    private int iterations = 10;
+    private long seed = 42;
+    private File dir = new File(System.getProperty("java.io.tmpdir"));
+    private int bufferSize = 32 * 1024;
+    private File output;
+
+    // a strategy reading in and writing out, encoding cases get the raw corpus and decoding cases its encoding
+    private abstract static class Case {
+        final String name;
+        final boolean encode;
+
+        Case(String name, boolean encode) {
+            this.name = name;
+            this.encode = encode;
+        }
+
+        abstract void run(File in, File out) throws IOException;
+    }
+
+    private static final class Result {
+        final Case c;
+        final long inputBytes;
+        final long outputBytes;
+        final long[] nanos;
+
+        Result(Case c, long inputBytes, long outputBytes, long[] nanos) {
+            this.c = c;
+            this.inputBytes = inputBytes;
+            this.outputBytes = outputBytes;
+            this.nanos = nanos;
+        }
+
+        // nearest rank percentile of the sorted timings
+        long percentile(int p) {
+            int rank = (int)Math.ceil(p / 100.0 * nanos.length);
+            return nanos[Math.max(0, rank - 1)];
+        }
+
+        long mean() {
+            long sum = 0;
+            for (long n : nanos) {
+                sum += n;
+            }
+            return sum / nanos.length;
+        }
+    }
+
+    private List<Case> cases() {
+        final int bufferSize = this.bufferSize;
+        List<Case> cases = new ArrayList<Case>();
+        cases.add(new Case("StreamEncoder.encode", true) {
+            void run(File in, File out) throws IOException {
+                new Base64StreamEncoder().encode(in, out);
+            }
+        });
+        cases.add(new Case("StreamEncoder.encodeMapped", true) {
+            void run(File in, File out) throws IOException {
+                new Base64StreamEncoder().encodeMapped(in, out);
+            }
+        });
+        cases.add(new Case("StreamEncoder.encodeParallel", true) {
+            void run(File in, File out) throws IOException {
+                new Base64StreamEncoder().encodeParallel(in, out);
+            }
+        });
+        cases.add(new Case("StreamDecoder.decode", false) {
+            void run(File in, File out) throws IOException {
+                new Base64StreamDecoder().decode(in, out, bufferSize);
+            }
+        });
+        for (final boolean directIn : new boolean[]{false, true}) {
+            for (final boolean directOut : new boolean[]{false, true}) {
+                String name = "NIODecoder.decode(" + (directIn ? "direct" : "indirect") + ", " + (directOut ? "direct" : "indirect") + ")";
+                cases.add(new Case(name, false) {
+                    void run(File in, File out) throws IOException {
+                        new Base64NIODecoder().decode(in, out, bufferSize, directIn, directOut);
+                    }
+                });
+            }
+        }
+        for (final boolean directOut : new boolean[]{false, true}) {
+            cases.add(new Case("NIODecoder.decodeMapped(" + (directOut ? "direct" : "indirect") + ")", false) {
+                void run(File in, File out) throws IOException {
+                    new Base64NIODecoder().decodeMapped(in, out, bufferSize, directOut);
+                }
+            });
+        }
+        cases.add(new Case("NIODecoder.decodeParallel", false) {
+            void run(File in, File out) throws IOException {
+                new Base64NIODecoder().decodeParallel(in, out);
+            }
+        });
+        return cases;
+    }
+
+    // the same seed and size always give the same corpus
+    private void generate(File file) throws IOException {
+        Random random = new Random(seed);
+        byte[] chunk = new byte[CHUNK_SIZE];
+        OutputStream out = new FileOutputStream(file);
+        try {
+            for (long remaining = size; remaining > 0; remaining -= chunk.length) {
+                random.nextBytes(chunk);
+                out.write(chunk, 0, (int)Math.min(remaining, chunk.length));
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private Result measure(Case c, File data, File encoded, File out, PrintStream log) throws IOException {
+        File in = c.encode ? data : encoded;
+        long expected = c.encode ? encoded.length() : data.length();
+        long[] nanos = new long[iterations];
+        for (int i = -warmup; i < iterations; i++) {
+            out.delete();
+            long start = System.nanoTime();
+            c.run(in, out);
+            long time = System.nanoTime() - start;
+            if (out.length() != expected) {
+                throw new IllegalStateException(c.name + " wrote " + out.length() + " bytes instead of " + expected);
+            }
+            if (i >= 0) {
+                nanos[i] = time;
+            }
+        }
+        Arrays.sort(nanos);
+        Result result = new Result(c, in.length(), expected, nanos);
+        log.println(String.format(Locale.ROOT, "%-40s %10.1f MB/s  p50 %9.2f ms  p99 %9.2f ms",
+                c.name, mbPerSecond(result), millis(result.percentile(50)), millis(result.percentile(99))));
+        return result;
+    }
+
+    private double mbPerSecond(Result result) {
+        return size / 1e6 / (result.percentile(50) / 1e9);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static String quote(String str) {
+        StringBuilder builder = new StringBuilder("\"");
+        for (int i = 0; i < str.length(); i++) {
+            char ch = str.charAt(i);
+            if (ch == '"' || ch == '\\') {
+                builder.append('\\').append(ch);
+            } else if (ch < ' ') {
+                builder.append(String.format(Locale.ROOT, "\\u%04x", (int)ch));
+            } else {
+                builder.append(ch);
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    private static String property(String name) {
+        return quote(System.getProperty(name, ""));
+    }
+
+    private void report(List<Result> results, Writer out) throws IOException {
+        out.write("{\n");
+        out.write("  \"javaVersion\": " + property("java.version") + ",\n");
+        out.write("  \"vmName\": " + property("java.vm.name") + ",\n");
+        out.write("  \"osName\": " + property("os.name") + ",\n");
+        out.write("  \"osArch\": " + property("os.arch") + ",\n");
+        out.write("  \"processors\": " + Runtime.getRuntime().availableProcessors() + ",\n");
+        out.write("  \"directory\": " + quote(dir.getAbsolutePath()) + ",\n");
+        out.write("  \"size\": " + size + ",\n");
+        out.write("  \"seed\": " + seed + ",\n");
+        out.write("  \"bufferSize\": " + bufferSize + ",\n");
+        out.write("  \"warmup\": " + warmup + ",\n");
+        out.write("  \"iterations\": " + iterations + ",\n");
+        out.write("  \"results\": [");
+        for (int i = 0; i < results.size(); i++) {
+            Result result = results.get(i);
+            out.write(i == 0 ? "\n" : ",\n");
+            out.write("    {\"name\": " + quote(result.c.name)
+                    + ", \"operation\": " + quote(result.c.encode ? "encode" : "decode")
+                    + ", \"inputBytes\": " + result.inputBytes
+                    + ", \"outputBytes\": " + result.outputBytes
+                    + String.format(Locale.ROOT, ", \"mbPerSecond\": %.2f", mbPerSecond(result))
+                    + String.format(Locale.ROOT, ", \"p50Millis\": %.3f", millis(result.percentile(50)))
+                    + String.format(Locale.ROOT, ", \"p99Millis\": %.3f", millis(result.percentile(99)))
+                    + String.format(Locale.ROOT, ", \"minMillis\": %.3f", millis(result.nanos[0]))
+                    + String.format(Locale.ROOT, ", \"maxMillis\": %.3f", millis(result.nanos[result.nanos.length - 1]))
+                    + String.format(Locale.ROOT, ", \"meanMillis\": %.3f", millis(result.mean()))
+                    + "}");
+        }
+        out.write("\n  ]\n}\n");
+        out.flush();
+    }
+
+    private void run() throws IOException {
+        PrintStream log = System.err;
+        File data = File.createTempFile("base64-corpus", ".bin", dir);
+        File encoded = File.createTempFile("base64-corpus", ".b64", dir);
+        File out = File.createTempFile("base64-output", ".tmp", dir);
+        try {
+            log.println("Generating " + size + " bytes in " + dir.getAbsolutePath());
+            generate(data);
+            new Base64StreamEncoder().encode(data, encoded);
+            List<Result> results = new ArrayList<Result>();
+            for (Case c : cases()) {
+                results.add(measure(c, data, encoded, out, log));
+            }
+            if (output == null) {
+                report(results, new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            } else {
+                Writer writer = new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8);
+                try {
+                    report(results, writer);
+                } finally {
+                    writer.close();
+                }
+                log.println("Report written to " + output.getAbsolutePath());
+            }
+        } finally {
+            data.delete();
+            encoded.delete();
+            out.delete();
+        }
+    }
+
+    // sizes may end in k, m or g for binary kilo-, mega- and gigabytes
+    static long parseSize(String str) {
+        String lower = str.trim().toLowerCase(Locale.ROOT);
+        long factor = 1;
+        char unit = lower.isEmpty() ? ' ' : lower.charAt(lower.length() - 1);
+        if (unit == 'k' || unit == 'm' || unit == 'g') {
+            factor = unit == 'k' ? 1024L : unit == 'm' ? 1024L * 1024 : 1024L * 1024 * 1024;
+            lower = lower.substring(0, lower.length() - 1);
+        }
+        return Long.parseLong(lower) * factor;
+    }
+
+    private static void usage(String message) {
+        System.err.println(message);
+        System.err.println("Usage: FileThroughput [--size 64m] [--warmup 2] [--iterations 10] [--seed 42] [--dir tmp] [--buffer 32k] [--output report.json]");
+        System.exit(2);
+    }
+
+    public static void main(String[] args) throws IOException {
+        FileThroughput benchmark = new FileThroughput();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (i + 1 >= args.length) {
+                usage("Missing value for " + arg);
+            }
+            String value = args[++i];
+            try {
+                if (arg.equals("--size")) {
+                    benchmark.size = parseSize(value);
+                } else if (arg.equals("--warmup")) {
+                    benchmark.warmup = Integer.parseInt(value);
+                } else if (arg.equals("--iterations")) {
+                    benchmark.iterations = Integer.parseInt(value);
+                } else if (arg.equals("--seed")) {
+                    benchmark.seed = Long.parseLong(value);
+                } else if (arg.equals("--dir")) {
+                    benchmark.dir = new File(value);
+                } else if (arg.equals("--buffer")) {
+                    benchmark.bufferSize = (int)parseSize(value);
+                } else if (arg.equals("--output")) {
+                    benchmark.output = new File(value);
+                } else {
+                    usage("Unknown option " + arg);
+                }
+            } catch (NumberFormatException ex) {
+                usage("Invalid value " + value + " for " + arg);
+            }
+        }
+        if (benchmark.size <= 0 || benchmark.warmup < 0 || benchmark.iterations <= 0 || benchmark.bufferSize <= 0) {
+            usage("Size, iterations and buffer size have to be positive");
+        }
+        benchmark.run();
+    }
+}
@@ -0,0 +1,56 @@
+package net.jhorstmann.base64.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import net.jhorstmann.base64.Base64Alphabet;
+import net.jhorstmann.base64.Base64Codec;
+import net.jhorstmann.base64.Base64StreamEncoder;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Random bytes of the given size and their encoding, either on a single line or in MIME lines of 76 characters
+// separated by CRLF. The output arrays are sized for encodeInto and decodeInto, so only the coders allocate.
+@State(Scope.Benchmark)
+public class Payload {
+
+    @Param({"16", "256", "4096", "65536", "1048576", "67108864"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean wrapped;
+
+    public byte[] data;
+    public String encoded;
+    public byte[] encodedBytes;
+    public char[] encodedChars;
+    public byte[] encodeOut;
+    public byte[] decodeOut;
+
+    public java.util.Base64.Encoder jdkEncoder;
+    public java.util.Base64.Decoder jdkDecoder;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        data = new byte[size];
+        new Random(size).nextBytes(data);
+        jdkEncoder = wrapped ? java.util.Base64.getMimeEncoder() : java.util.Base64.getEncoder();
+        jdkDecoder = wrapped ? java.util.Base64.getMimeDecoder() : java.util.Base64.getDecoder();
+        encoded = jdkEncoder.encodeToString(data);
+        encodedBytes = encoded.getBytes(StandardCharsets.US_ASCII);
+        encodedChars = encoded.toCharArray();
+        encodeOut = new byte[encodedBytes.length];
+        decodeOut = new byte[size];
+    }
+
+    // the stream coders keep state, so every invocation needs a new one like in real use
+    public Base64StreamEncoder newEncoder() {
+        return wrapped ? Base64StreamEncoder.mime() : new Base64StreamEncoder(Base64Alphabet.STANDARD, true);
+    }
+
+    public Base64Codec codec() {
+        return wrapped ? Base64Codec.MIME : Base64Codec.STANDARD;
+    }
+}
@@ -0,0 +1,104 @@
+package net.jhorstmann.base64.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import net.jhorstmann.base64.Base64InputStream;
+import net.jhorstmann.base64.Base64OutputStream;
+import net.jhorstmann.base64.Base64StreamDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Base64OutputStream, Base64InputStream and the stream methods of the coders against the wrapped streams of
+// java.util.Base64, all reading from memory and writing to a stream that discards its input
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class StreamBenchmark {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    // counts the written bytes so the work cannot be eliminated
+    static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    private static long drain(InputStream in, byte[] buffer) throws IOException {
+        long count = 0;
+        int len;
+        while ((len = in.read(buffer)) != -1) {
+            count += len;
+        }
+        in.close();
+        return count;
+    }
+
+    @Benchmark
+    public long outputStream(Payload payload) throws IOException {
+        CountingOutputStream target = new CountingOutputStream();
+        OutputStream out = new Base64OutputStream(payload.newEncoder(), target, BUFFER_SIZE);
+        out.write(payload.data);
+        out.close();
+        return target.count;
+    }
+
+    @Benchmark
+    public long jdkOutputStream(Payload payload) throws IOException {
+        CountingOutputStream target = new CountingOutputStream();
+        OutputStream out = payload.jdkEncoder.wrap(target);
+        out.write(payload.data);
+        out.close();
+        return target.count;
+    }
+
+    @Benchmark
+    public int encodeStreamToAppendable(Payload payload) throws IOException {
+        StringBuilder out = new StringBuilder();
+        payload.newEncoder().encode(new ByteArrayInputStream(payload.data), out, BUFFER_SIZE);
+        return out.length();
+    }
+
+    @Benchmark
+    public long inputStream(Payload payload) throws IOException {
+        InputStream in = new Base64InputStream(new Base64StreamDecoder(), new ByteArrayInputStream(payload.encodedBytes), BUFFER_SIZE);
+        return drain(in, payload.decodeOut);
+    }
+
+    @Benchmark
+    public long readerInputStream(Payload payload) throws IOException {
+        InputStream in = new Base64InputStream(new Base64StreamDecoder(), new CharArrayReader(payload.encodedChars), BUFFER_SIZE);
+        return drain(in, payload.decodeOut);
+    }
+
+    @Benchmark
+    public long jdkInputStream(Payload payload) throws IOException {
+        return drain(payload.jdkDecoder.wrap(new ByteArrayInputStream(payload.encodedBytes)), payload.decodeOut);
+    }
+
+    @Benchmark
+    public long decodeStream(Payload payload) throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        new Base64StreamDecoder().decode(new ByteArrayInputStream(payload.encodedBytes), out, BUFFER_SIZE);
+        return out.count;
+    }
+}
@@ -0,0 +1,20 @@
+package net.jhorstmann.base64;
+
+// The alphabets of RFC 4648. Each one has its own lookup tables and kernels, so choosing an alphabet costs
+// nothing per character.
+public enum Base64Alphabet {
+    // '+' and '/' for 62 and 63
+    STANDARD(Base64Tables.STANDARD),
+    // '-' and '_' for 62 and 63, safe in urls and file names
+    URL_SAFE(Base64Tables.URL_SAFE);
+
+    private final Base64Tables tables;
+
+    Base64Alphabet(Base64Tables tables) {
+        this.tables = tables;
+    }
+
+    Base64Tables tables() {
+        return tables;
+    }
+}
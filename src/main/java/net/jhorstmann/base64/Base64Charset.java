@@ -4,16 +4,51 @@ import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CharsetEncoder;
 
+// Decoding bytes with one of these charsets gives their base64 encoding, encoding a string decodes it again.
+// Each charset of the family creates coders for its own alphabet and line breaks.
 class Base64Charset extends Charset {
     public static final String CHARSET_NAME = "BASE64";
+    public static final String URL_CHARSET_NAME = "BASE64URL";
+    public static final String MIME_CHARSET_NAME = "BASE64-MIME";
+
+    private final Base64Tables tables;
+    private final int lineWidth;
+    private final String lineSeparator;
 
     protected Base64Charset() {
-        super(CHARSET_NAME, new String[0]);
+        this(CHARSET_NAME, new String[]{"BASE-64"}, Base64Tables.STANDARD, 76, "\n");
+    }
+
+    private Base64Charset(String name, String[] aliases, Base64Tables tables, int lineWidth, String lineSeparator) {
+        super(name, aliases);
+        this.tables = tables;
+        this.lineWidth = lineWidth;
+        this.lineSeparator = lineSeparator;
+    }
+
+    // RFC 4648 url and filename safe alphabet without line breaks
+    static Base64Charset url() {
+        return new Base64Charset(URL_CHARSET_NAME, new String[]{"BASE64-URL", "BASE64URLSAFE"}, Base64Tables.URL_SAFE, 0, "");
+    }
+
+    // RFC 2045 lines of 76 characters separated by CRLF
+    static Base64Charset mime() {
+        return new Base64Charset(MIME_CHARSET_NAME, new String[]{"BASE64MIME", "MIME-BASE64"}, Base64Tables.STANDARD,
+                Base64StreamEncoder.MIME_LINE_WIDTH, Base64StreamEncoder.MIME_LINE_SEPARATOR);
+    }
+
+    Base64StreamEncoder newStreamEncoder() {
+        return new Base64StreamEncoder(this.tables, true, this.lineWidth, this.lineSeparator);
+    }
+
+    // url safe strings often come without padding, the other variants insist on it
+    Base64NIODecoder newNIODecoder() {
+        return new Base64NIODecoder(this.tables, this.tables != Base64Tables.URL_SAFE);
     }
 
     @Override
     public boolean contains(Charset cs) {
-        return cs instanceof Base64Charset;
+        return cs instanceof Base64Charset && ((Base64Charset)cs).tables == this.tables;
     }
 
     @Override
@@ -3,7 +3,6 @@ package net.jhorstmann.base64;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
-import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CoderMalfunctionError;
 import java.nio.charset.CoderResult;
@@ -11,10 +10,17 @@ import java.nio.charset.CoderResult;
 class Base64CharsetDecoder extends CharsetDecoder {
 
     private final Base64StreamEncoder coder;
+    // room the per byte loop needs for the characters of the next byte
+    private final int maxChars;
 
-    protected Base64CharsetDecoder(Charset cs) {
-        super(cs, 4.0f / 3.0f, 4.0f);
-        this.coder = new Base64StreamEncoder();
+    protected Base64CharsetDecoder(Base64Charset cs) {
+        this(cs, cs.newStreamEncoder());
+    }
+
+    private Base64CharsetDecoder(Base64Charset cs, Base64StreamEncoder coder) {
+        super(cs, 4.0f / 3.0f, Math.max(4.0f, coder.maxCharsPerByte()));
+        this.coder = coder;
+        this.maxChars = coder.maxCharsPerByte();
     }
 
     @Override
@@ -22,11 +28,37 @@ class Base64CharsetDecoder extends CharsetDecoder {
         this.coder.reset();
     }
 
+    // Number of bytes that can be encoded in bulk while leaving room for the chars of one more byte, so that the
+    // per byte loop below would have consumed all of them as well and returns the same CoderResult at the same
+    // position.
+    private int bulkLength(int length, int capacity) {
+        final long available = capacity - this.maxChars;
+        int len = (int)Math.min(length, Math.max(0, available / 4 * 3));
+        long excess;
+        while (len > 0 && (excess = coder.outputLength(len) - available) > 0) {
+            len = (int)Math.max(0, len - (excess / 4 + 1) * 3);
+        }
+        return len;
+    }
+
     @Override
     protected CoderResult decodeLoop(ByteBuffer in, CharBuffer out) {
         try {
+            final int len = bulkLength(in.remaining(), out.remaining());
+            if (len > 0) {
+                if (in.hasArray() && out.hasArray()) {
+                    int count = coder.encode(in.array(), in.arrayOffset() + in.position(), len, out.array(), out.arrayOffset() + out.position());
+                    in.position(in.position() + len);
+                    out.position(out.position() + count);
+                } else {
+                    ByteBuffer bulk = in.duplicate();
+                    bulk.limit(bulk.position() + len);
+                    coder.encodeByteBuffer(bulk, out);
+                    in.position(bulk.position());
+                }
+            }
             while (in.hasRemaining()) {
-                if (out.remaining() < 3) {
+                if (out.remaining() < this.maxChars) {
                     return CoderResult.OVERFLOW;
                 }
                 coder.encode(in.get() & 0xFF, out);
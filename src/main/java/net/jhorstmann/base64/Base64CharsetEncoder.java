@@ -9,11 +9,11 @@ import java.nio.charset.CoderResult;
 
 class Base64CharsetEncoder extends CharsetEncoder {
 
-    private Base64NIODecoder coder;
+    private final Base64NIODecoder coder;
 
     protected Base64CharsetEncoder(Base64Charset cs) {
         super(cs, 3.0f / 4.0f, 3);
-        this.coder = new Base64NIODecoder();
+        this.coder = cs.newNIODecoder();
     }
 
     @Override
@@ -24,6 +24,17 @@ class Base64CharsetEncoder extends CharsetEncoder {
     @Override
     protected CoderResult encodeLoop(CharBuffer in, ByteBuffer out) {
         try {
+            // bulk decode while leaving room for 3 bytes, the per char loop below would have consumed all of these
+            // chars as well and returns the same CoderResult at the same position
+            if (out.remaining() > 3 && in.hasRemaining()) {
+                final int limit = out.limit();
+                out.limit(limit - 3);
+                try {
+                    coder.decodeImpl(in, out);
+                } finally {
+                    out.limit(limit);
+                }
+            }
             while (in.hasRemaining()) {
                 if (out.remaining() < 3) {
                     return CoderResult.OVERFLOW;
@@ -2,24 +2,31 @@ package net.jhorstmann.base64;
 
 import java.nio.charset.Charset;
 import java.nio.charset.spi.CharsetProvider;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 
 public class Base64CharsetProvider extends CharsetProvider {
-    private Charset charset = new Base64Charset();
+    // shared by all instances, the jdk creates a new provider for lookups of names it has not cached
+    private static final List<Charset> charsets = Arrays.<Charset>asList(new Base64Charset(), Base64Charset.url(), Base64Charset.mime());
 
     @Override
     public Iterator<Charset> charsets() {
-        return Collections.singleton(charset).iterator();
+        return charsets.iterator();
     }
 
     @Override
     public Charset charsetForName(String charsetName) {
-        if (Base64Charset.CHARSET_NAME.equalsIgnoreCase(charsetName)) {
-            return charset;
-        }
-        else {
-            return null;
+        for (Charset charset : charsets) {
+            if (charset.name().equalsIgnoreCase(charsetName)) {
+                return charset;
+            }
+            for (String alias : charset.aliases()) {
+                if (alias.equalsIgnoreCase(charsetName)) {
+                    return charset;
+                }
+            }
         }
+        return null;
     }
 }
@@ -0,0 +1,347 @@
+package net.jhorstmann.base64;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Encodes and decodes complete inputs in one call. An instance only holds its configuration and every call keeps
+// its state in local variables, so the constants can be shared by all threads. The Into methods allocate no output,
+// only the word kernels create short lived ByteBuffer views of the arrays. Base64StreamEncoder and
+// Base64StreamDecoder remain for input that arrives in parts.
+public final class Base64Codec {
+
+    // padded single line, decoding requires the padding
+    public static final Base64Codec STANDARD = new Base64Codec(Base64Tables.STANDARD, true, 0, "");
+    // url safe alphabet without padding, decoding accepts input with or without it
+    public static final Base64Codec URL_SAFE = new Base64Codec(Base64Tables.URL_SAFE, false, 0, "");
+    // RFC 2045 lines of 76 characters separated by CRLF
+    public static final Base64Codec MIME = new Base64Codec(Base64Tables.STANDARD, true,
+            Base64StreamEncoder.MIME_LINE_WIDTH, Base64StreamEncoder.MIME_LINE_SEPARATOR);
+
+    private final Base64Tables tables;
+    private final boolean padding;
+    // groups per line, 0 without line breaks
+    private final int groupsPerLine;
+    private final char[] lineSeparator;
+
+    private Base64Codec(Base64Tables tables, boolean padding, int lineWidth, String lineSeparator) {
+        this.tables = tables;
+        this.padding = padding;
+        this.groupsPerLine = lineSeparator.isEmpty() ? 0 : lineWidth / 4;
+        this.lineSeparator = lineSeparator.toCharArray();
+    }
+
+    // Encodes to a single line. Without padding the last group ends after its second or third character and
+    // decoding accepts input with or without padding.
+    public static Base64Codec of(Base64Alphabet alphabet, boolean padding) {
+        return new Base64Codec(alphabet.tables(), padding, 0, "");
+    }
+
+    // breaks lines like the corresponding Base64StreamEncoder, the decoder skips any whitespace between groups
+    public static Base64Codec of(Base64Alphabet alphabet, boolean padding, int lineWidth, String lineSeparator) {
+        Base64Tables tables = alphabet.tables();
+        return new Base64Codec(tables, padding, Base64StreamEncoder.checkLineWidth(tables, lineWidth, lineSeparator), lineSeparator);
+    }
+
+    // exact number of characters that encoding length bytes produces, including line separators and padding
+    public long encodedLength(long length) {
+        long groups = (length + 2) / 3;
+        long rest = length % 3;
+        long chars = length / 3 * 4 + (rest == 0 ? 0 : this.padding ? 4 : rest + 1);
+        if (this.groupsPerLine > 0 && groups > 0) {
+            chars += (groups - 1) / this.groupsPerLine * this.lineSeparator.length;
+        }
+        return chars;
+    }
+
+    public String encode(byte[] in) {
+        byte[] out = new byte[(int)encodedLength(in.length)];
+        return new String(out, 0, encodeInto(in, 0, in.length, out, 0), StandardCharsets.ISO_8859_1);
+    }
+
+    public byte[] encodeToBytes(byte[] in) {
+        byte[] out = new byte[(int)encodedLength(in.length)];
+        encodeInto(in, 0, in.length, out, 0);
+        return out;
+    }
+
+    public int encodeInto(byte[] in, byte[] out, int outOffset) {
+        return encodeInto(in, 0, in.length, out, outOffset);
+    }
+
+    // Encodes in[offset..offset+length) to out at outOffset and returns the number of characters. Throws
+    // IndexOutOfBoundsException without writing anything if they do not fit.
+    public int encodeInto(byte[] in, int offset, int length, byte[] out, int outOffset) {
+        if (offset < 0 || length < 0 || length > in.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (outOffset < 0 || encodedLength(length) > out.length - outOffset) {
+            throw new IndexOutOfBoundsException("Capacity (" + (out.length - outOffset) + ") exceeded");
+        }
+        final Base64Kernel kernel = KernelSelector.forArray(this.tables, length);
+        final int groups = length / 3;
+        final int groupsPerLine = this.groupsPerLine;
+        int idx = offset;
+        int pos = outOffset;
+        if (groupsPerLine == 0) {
+            kernel.encode(in, idx, groups, out, pos);
+            idx += groups * 3;
+            pos += groups * 4;
+        } else {
+            final char[] separator = this.lineSeparator;
+            int first = Math.min(groups, groupsPerLine);
+            kernel.encode(in, idx, first, out, pos);
+            idx += first * 3;
+            pos += first * 4;
+            int lines = (groups - first) / groupsPerLine;
+            kernel.encodeLines(in, idx, lines, groupsPerLine, separator, out, pos);
+            idx += lines * groupsPerLine * 3;
+            pos += lines * (groupsPerLine * 4 + separator.length);
+            int rest = groups - first - lines * groupsPerLine;
+            if (rest > 0) {
+                pos = Base64Kernel.writeSeparator(separator, out, pos);
+                kernel.encode(in, idx, rest, out, pos);
+                idx += rest * 3;
+                pos += rest * 4;
+            }
+            // the last partial group starts a new line if the current one is full
+            if (length % 3 != 0 && groups > 0 && groups % groupsPerLine == 0) {
+                pos = Base64Kernel.writeSeparator(separator, out, pos);
+            }
+        }
+        final char[] alphabet = this.tables.alphabet;
+        switch (offset + length - idx) {
+            case 1: {
+                int b0 = in[idx] & 0xFF;
+                out[pos++] = (byte)alphabet[b0 >>> 2];
+                out[pos++] = (byte)alphabet[(b0 & 3) << 4];
+                if (this.padding) {
+                    out[pos++] = '=';
+                    out[pos++] = '=';
+                }
+                break;
+            }
+            case 2: {
+                int b0 = in[idx] & 0xFF;
+                int b1 = in[idx + 1] & 0xFF;
+                out[pos++] = (byte)alphabet[b0 >>> 2];
+                out[pos++] = (byte)alphabet[(b0 & 3) << 4 | b1 >>> 4];
+                out[pos++] = (byte)alphabet[(b1 & 15) << 2];
+                if (this.padding) {
+                    out[pos++] = '=';
+                }
+                break;
+            }
+            default:
+                break;
+        }
+        return pos - outOffset;
+    }
+
+    // The exact number of bytes an input decodes to, accounting for whitespace, line separators and padding.
+    // Scans the input once, valid input is assumed.
+
+    public int decodedLength(byte[] in, int offset, int length) {
+        return (int)DecoderCore.decodedLength(in, offset, offset + length, 0, 0);
+    }
+
+    public int decodedLength(char[] in, int offset, int length) {
+        return (int)DecoderCore.decodedLength(in, offset, offset + length, 0, 0);
+    }
+
+    public int decodedLength(CharSequence in) {
+        return (int)DecoderCore.decodedLength(in, 0, in.length(), 0, 0);
+    }
+
+    // bounds the output of length characters ending with the given padding, exact for input without whitespace
+    private static int maxLength(int length, int padding) {
+        return (int)((length - padding) * 3L / 4);
+    }
+
+    private static byte[] trim(byte[] out, int length) {
+        return length == out.length ? out : Arrays.copyOf(out, length);
+    }
+
+    public byte[] decode(byte[] in) throws IOException {
+        byte[] out = new byte[maxLength(in.length, DecoderCore.trailingPadding(in, 0, in.length))];
+        return trim(out, decode(in, 0, in.length, out, 0));
+    }
+
+    public byte[] decode(char[] in) throws IOException {
+        byte[] out = new byte[maxLength(in.length, DecoderCore.trailingPadding(in, 0, in.length))];
+        return trim(out, decode(in, 0, in.length, out, 0));
+    }
+
+    public byte[] decode(CharSequence in) throws IOException {
+        final int length = in.length();
+        byte[] out = new byte[maxLength(length, DecoderCore.trailingPadding(in, 0, length))];
+        return trim(out, decode(in, 0, length, out, 0));
+    }
+
+    private static void checkCapacity(long required, byte[] out, int outOffset) {
+        if (outOffset < 0 || required > out.length - outOffset) {
+            throw new IndexOutOfBoundsException("Capacity (" + (out.length - outOffset) + ") exceeded");
+        }
+    }
+
+    // The decodeInto methods decode a complete input to out at outOffset and return the number of bytes. If out
+    // might be too small the input is measured first, so IndexOutOfBoundsException is thrown before anything
+    // is written.
+
+    public int decodeInto(byte[] in, int offset, int length, byte[] out, int outOffset) throws IOException {
+        if (offset < 0 || length < 0 || length > in.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (maxLength(length, DecoderCore.trailingPadding(in, offset, offset + length)) > out.length - outOffset) {
+            checkCapacity(decodedLength(in, offset, length), out, outOffset);
+        }
+        return decode(in, offset, offset + length, out, outOffset);
+    }
+
+    public int decodeInto(byte[] in, byte[] out, int outOffset) throws IOException {
+        return decodeInto(in, 0, in.length, out, outOffset);
+    }
+
+    public int decodeInto(char[] in, int offset, int length, byte[] out, int outOffset) throws IOException {
+        if (offset < 0 || length < 0 || length > in.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (maxLength(length, DecoderCore.trailingPadding(in, offset, offset + length)) > out.length - outOffset) {
+            checkCapacity(decodedLength(in, offset, length), out, outOffset);
+        }
+        return decode(in, offset, offset + length, out, outOffset);
+    }
+
+    public int decodeInto(char[] in, byte[] out, int outOffset) throws IOException {
+        return decodeInto(in, 0, in.length, out, outOffset);
+    }
+
+    public int decodeInto(CharSequence in, byte[] out, int outOffset) throws IOException {
+        final int length = in.length();
+        if (maxLength(length, DecoderCore.trailingPadding(in, 0, length)) > out.length - outOffset) {
+            checkCapacity(decodedLength(in), out, outOffset);
+        }
+        return decode(in, 0, length, out, outOffset);
+    }
+
+    // The decode loops run the kernel over complete groups and only handle whitespace between groups and the
+    // groups with padding or at the end of the input themselves. They return the number of decoded bytes.
+
+    private int decode(final byte[] in, int idx, final int end, final byte[] out, final int outOffset) throws IOException {
+        final Base64Kernel kernel = KernelSelector.forArray(this.tables, end - idx);
+        int pos = outOffset;
+        while (idx < end) {
+            int groups = Math.min((end - idx) / 4, (out.length - pos) / 3);
+            int count = kernel.decode(in, idx, groups, out, pos);
+            idx += count * 4;
+            pos += count * 3;
+            if (idx == end) {
+                break;
+            }
+            int ch = in[idx] & 0xFF;
+            if (DecoderCore.isSpace(ch)) {
+                idx++;
+                continue;
+            }
+            int n = Math.min(4, end - idx);
+            pos = decodeGroup(ch,
+                    n > 1 ? in[idx + 1] & 0xFF : -1,
+                    n > 2 ? in[idx + 2] & 0xFF : -1,
+                    n > 3 ? in[idx + 3] & 0xFF : -1, out, pos);
+            idx += n;
+        }
+        return pos - outOffset;
+    }
+
+    private int decode(final char[] in, int idx, final int end, final byte[] out, final int outOffset) throws IOException {
+        final Base64Kernel kernel = KernelSelector.forChars(this.tables, end - idx);
+        int pos = outOffset;
+        while (idx < end) {
+            int groups = Math.min((end - idx) / 4, (out.length - pos) / 3);
+            int count = kernel.decode(in, idx, groups, out, pos);
+            idx += count * 4;
+            pos += count * 3;
+            if (idx == end) {
+                break;
+            }
+            int ch = in[idx];
+            if (DecoderCore.isSpace(ch)) {
+                idx++;
+                continue;
+            }
+            int n = Math.min(4, end - idx);
+            pos = decodeGroup(ch,
+                    n > 1 ? in[idx + 1] : -1,
+                    n > 2 ? in[idx + 2] : -1,
+                    n > 3 ? in[idx + 3] : -1, out, pos);
+            idx += n;
+        }
+        return pos - outOffset;
+    }
+
+    private int decode(final CharSequence in, int idx, final int end, final byte[] out, final int outOffset) throws IOException {
+        final Base64Kernel kernel = KernelSelector.forChars(this.tables, end - idx);
+        int pos = outOffset;
+        while (idx < end) {
+            int groups = Math.min((end - idx) / 4, (out.length - pos) / 3);
+            int count = kernel.decode(in, idx, groups, out, pos);
+            idx += count * 4;
+            pos += count * 3;
+            if (idx == end) {
+                break;
+            }
+            int ch = in.charAt(idx);
+            if (DecoderCore.isSpace(ch)) {
+                idx++;
+                continue;
+            }
+            int n = Math.min(4, end - idx);
+            pos = decodeGroup(ch,
+                    n > 1 ? in.charAt(idx + 1) : -1,
+                    n > 2 ? in.charAt(idx + 2) : -1,
+                    n > 3 ? in.charAt(idx + 3) : -1, out, pos);
+            idx += n;
+        }
+        return pos - outOffset;
+    }
+
+    private int code(int ch) throws IOException {
+        int val = ch >= 0 && ch < 256 ? this.tables.codes3[ch] : -1;
+        if (val < 0) {
+            throw ch == -1 ? new IncompleteStreamException(ch) : new InvalidCharacterException(ch);
+        }
+        return val;
+    }
+
+    private static int reserve(int count, byte[] out, int pos) {
+        if (count > out.length - pos) {
+            throw new IndexOutOfBoundsException("Capacity (" + out.length + ") exceeded");
+        }
+        return pos;
+    }
+
+    // Decodes the group starting with a, -1 stands for the end of the input. Consumes all given characters,
+    // a group may only be shorter than four characters at the end of unpadded input.
+    private int decodeGroup(int a, int b, int c, int d, byte[] out, int pos) throws IOException {
+        int bits = code(a) << 18 | code(b) << 12;
+        if (c == -1 || c == '=') {
+            if (c == -1 ? this.padding : d != '=' && (d != -1 || this.padding)) {
+                throw c == -1 || d == -1 ? new IncompleteStreamException(-1) : new InvalidCharacterException(d);
+            }
+            out[reserve(1, out, pos)] = (byte)(bits >> 16);
+            return pos + 1;
+        }
+        bits |= code(c) << 6;
+        if (d == -1 || d == '=') {
+            if (d == -1 && this.padding) {
+                throw new IncompleteStreamException(-1);
+            }
+            reserve(2, out, pos);
+            out[pos]     = (byte)(bits >> 16);
+            out[pos + 1] = (byte)(bits >> 8);
+            return pos + 2;
+        }
+        Base64Kernel.writeGroup(out, reserve(3, out, pos), bits | code(d));
+        return pos + 3;
+    }
+}
@@ -1,79 +1,94 @@
 package net.jhorstmann.base64;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.Reader;
 
+// Decodes the base64 characters of a byte stream or a Reader. The source is read in chunks which are decoded
+// straight into the array passed to read, only the bytes of a group that does not fit are buffered.
 public class Base64InputStream extends InputStream {
 
-    static class OutputStreamBuffer extends ByteArrayOutputStream {
+    private static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
 
-        private int pos;
+    private final DecoderCore core;
+    // exactly one of in and reader is set, with the matching input buffer
+    private final InputStream in;
+    private final Reader reader;
+    private final byte[] bytes;
+    private final char[] chars;
+    private int inPos;
+    private int inLimit;
+    private boolean eof;
+    // decoded bytes that did not fit into the last read
+    private final byte[] pending = new byte[3];
+    private int pendingPos;
+    private int pendingLimit;
+    private final byte[] single = new byte[1];
+    private byte[] skipBuffer;
 
-        int remaining() {
-            return count - pos;
-        }
-
-        boolean hasRemaining() {
-            return pos < count;
-        }
-
-        void clear() {
-            pos = 0;
-        }
+    private Base64InputStream(Base64StreamDecoder decoder, InputStream in, Reader reader, int bufferSize) {
+        this.core = decoder.core();
+        this.in = in;
+        this.reader = reader;
+        this.bytes = in != null ? new byte[bufferSize] : null;
+        this.chars = reader != null ? new char[bufferSize] : null;
+    }
 
-        int read() {
-            if (hasRemaining()) {
-                int res = buf[pos++] & 0xFF;
-                if (pos == count) {
-                    pos = 0;
-                    count = 0;
-                }
-                return res;
-            }
-            else {
-                return -1;
-            }
-        }
+    public Base64InputStream(Base64StreamDecoder decoder, InputStream in, int bufferSize) {
+        this(decoder, in, null, bufferSize);
+    }
 
-        int read(byte[] b, int off, int len) {
-            if (hasRemaining()) {
-                int max = Math.min(b.length, remaining());
-                System.arraycopy(buf, pos, b, 0, max);
-                pos += max;
-                return max;
-            } else {
-                return -1;
-            }
-        }
+    public Base64InputStream(Base64StreamDecoder decoder, Reader reader, int bufferSize) {
+        this(decoder, null, reader, bufferSize);
     }
-    private Base64StreamDecoder decoder;
-    private Reader reader;
-    private OutputStreamBuffer buffer;
 
     public Base64InputStream(Base64StreamDecoder decoder, Reader reader) throws IOException {
-        this.decoder = decoder;
-        this.reader = reader;
-        this.buffer = new OutputStreamBuffer();
+        this(decoder, null, reader, DEFAULT_BUFFER_SIZE);
     }
 
     public Base64InputStream(InputStream in) throws IOException {
-        this(new InputStreamReader(in, "US-ASCII"));
+        this(new Base64StreamDecoder(), in, null, DEFAULT_BUFFER_SIZE);
     }
 
     public Base64InputStream(Reader reader) throws IOException {
-        this(new Base64StreamDecoder(), reader);
+        this(new Base64StreamDecoder(), null, reader, DEFAULT_BUFFER_SIZE);
+    }
+
+    // reads the next chunk of the source, returns false at its end
+    private boolean fill() throws IOException {
+        int len = this.in != null ? this.in.read(this.bytes) : this.reader.read(this.chars);
+        if (len < 0) {
+            this.eof = true;
+            this.inLimit = this.inPos;
+            return false;
+        }
+        this.inPos = 0;
+        this.inLimit = len;
+        return true;
+    }
+
+    // decodes buffered input into out[pos..limit), returns the new output position
+    private int decodeBuffered(byte[] out, int pos, int limit) throws IOException {
+        int next = this.in != null
+                ? this.core.decode(this.bytes, this.inPos, this.inLimit, out, pos, limit)
+                : this.core.decode(this.chars, this.inPos, this.inLimit, out, pos, limit);
+        this.inPos = next;
+        return this.core.position();
+    }
+
+    // true if more input can be read without blocking
+    private boolean ready() throws IOException {
+        return this.in != null ? this.in.available() > 0 : this.reader.ready();
     }
 
     @Override
     public int read() throws IOException {
-        while (!decoder.isEOF() && !buffer.hasRemaining()) {
-            int ch = reader.read();
-            decoder.decode(ch, buffer);
+        if (this.pendingPos < this.pendingLimit) {
+            return this.pending[this.pendingPos++] & 0xFF;
         }
-        return buffer.read();
+        byte[] b = this.single;
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
     }
 
     @Override
@@ -83,10 +98,78 @@ public class Base64InputStream extends InputStream {
 
     @Override
     public int read(byte[] b, int off, int len) throws IOException {
-        while (!decoder.isEOF() && buffer.remaining() < len - off) {
-            int ch = reader.read();
-            decoder.decode(ch, buffer);
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        } else if (len == 0) {
+            return 0;
+        }
+        final int end = off + len;
+        int pos = off;
+        while (this.pendingPos < this.pendingLimit && pos < end) {
+            b[pos++] = this.pending[this.pendingPos++];
+        }
+        while (pos < end) {
+            if (this.inPos < this.inLimit) {
+                if (end - pos >= 3) {
+                    pos = decodeBuffered(b, pos, end);
+                } else {
+                    this.pendingPos = 0;
+                    this.pendingLimit = decodeBuffered(this.pending, 0, 3);
+                    while (this.pendingPos < this.pendingLimit && pos < end) {
+                        b[pos++] = this.pending[this.pendingPos++];
+                    }
+                }
+            } else if (this.eof || (pos > off && !ready())) {
+                break;
+            } else if (!fill()) {
+                this.core.checkComplete();
+            }
+        }
+        return pos == off ? -1 : pos - off;
+    }
+
+    // Decoded bytes that can be read without touching the source: the pending bytes and what the buffered
+    // characters decode to on their own. Whitespace, padding and a group cut off at the end of the buffer do not
+    // count, neither does input the source has not handed out yet.
+    @Override
+    public int available() throws IOException {
+        long buffered = this.in != null
+                ? this.core.bufferedLength(this.bytes, this.inPos, this.inLimit)
+                : this.core.bufferedLength(this.chars, this.inPos, this.inLimit);
+        return (int)Math.min(Integer.MAX_VALUE, this.pendingLimit - this.pendingPos + buffered);
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (this.skipBuffer == null) {
+            this.skipBuffer = new byte[DEFAULT_BUFFER_SIZE];
+        }
+        long remaining = n;
+        int len;
+        while (remaining > 0 && (len = read(this.skipBuffer, 0, (int)Math.min(remaining, this.skipBuffer.length))) != -1) {
+            remaining -= len;
+        }
+        return n - remaining;
+    }
+
+    // decodes the rest of the stream into out, overrides InputStream.transferTo on java 9 and later
+    public long transferTo(OutputStream out) throws IOException {
+        byte[] buffer = new byte[(this.in != null ? this.bytes.length : this.chars.length) / 4 * 3 + 3];
+        long count = 0;
+        int len;
+        while ((len = read(buffer, 0, buffer.length)) != -1) {
+            out.write(buffer, 0, len);
+            count += len;
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.in != null) {
+            this.in.close();
+        } else {
+            this.reader.close();
         }
-        return buffer.read(b, off, len);
     }
 }
@@ -0,0 +1,100 @@
+package net.jhorstmann.base64;
+
+import java.nio.ByteBuffer;
+
+// bulk loops over complete groups, the state machines of the coders handle everything else
+abstract class Base64Kernel {
+
+    private final String name;
+
+    Base64Kernel(String name) {
+        this.name = name;
+    }
+
+    String name() {
+        return name;
+    }
+
+    // encodes complete groups, the input has to contain at least 3 * groups bytes starting at idx
+    abstract void encode(byte[] in, int idx, int groups, char[] out, int pos);
+
+    abstract void encode(ByteBuffer in, int idx, int groups, char[] out, int pos);
+
+    abstract void encode(byte[] in, int idx, int groups, byte[] out, int pos);
+
+    // absolute gets and puts, the positions of both buffers are not changed
+    abstract void encode(ByteBuffer in, int idx, int groups, ByteBuffer out, int pos);
+
+    // Encodes complete lines of groupsPerLine groups, each one preceded by the separator. This version calls
+    // encode once per line, kernels override it to keep their per call setup out of the line loop.
+    void encodeLines(final byte[] in, int idx, final int lines, final int groupsPerLine, final char[] separator, final byte[] out, int pos) {
+        for (int line = 0; line < lines; line++) {
+            pos = writeSeparator(separator, out, pos);
+            encode(in, idx, groupsPerLine, out, pos);
+            idx += groupsPerLine * 3;
+            pos += groupsPerLine * 4;
+        }
+    }
+
+    void encodeLines(final byte[] in, int idx, final int lines, final int groupsPerLine, final char[] separator, final char[] out, int pos) {
+        for (int line = 0; line < lines; line++) {
+            pos = writeSeparator(separator, out, pos);
+            encode(in, idx, groupsPerLine, out, pos);
+            idx += groupsPerLine * 3;
+            pos += groupsPerLine * 4;
+        }
+    }
+
+    // decodes complete groups up to the first one containing whitespace, padding or invalid characters,
+    // returns the number of decoded groups
+    abstract int decode(byte[] in, int idx, int groups, byte[] out, int pos);
+
+    abstract int decode(char[] in, int idx, int groups, byte[] out, int pos);
+
+    abstract int decode(CharSequence in, int idx, int groups, byte[] out, int pos);
+
+    abstract int decode(ByteBuffer in, int idx, int groups, byte[] out, int pos);
+
+    static int writeSeparator(final char[] separator, final byte[] out, int pos) {
+        for (int i = 0; i < separator.length; i++) {
+            out[pos++] = (byte)separator[i];
+        }
+        return pos;
+    }
+
+    static int writeSeparator(final char[] separator, final char[] out, int pos) {
+        for (int i = 0; i < separator.length; i++) {
+            out[pos++] = separator[i];
+        }
+        return pos;
+    }
+
+    static int writeSeparator(final char[] separator, final ByteBuffer out, int pos) {
+        for (int i = 0; i < separator.length; i++) {
+            out.put(pos++, (byte)separator[i]);
+        }
+        return pos;
+    }
+
+    static int readInt(final byte[] in, final int idx) {
+        return in[idx] << 24 | (in[idx + 1] & 0xFF) << 16 | (in[idx + 2] & 0xFF) << 8 | (in[idx + 3] & 0xFF);
+    }
+
+    static void writeInt(final byte[] out, final int pos, final int value) {
+        out[pos]     = (byte)(value >> 24);
+        out[pos + 1] = (byte)(value >> 16);
+        out[pos + 2] = (byte)(value >> 8);
+        out[pos + 3] = (byte)value;
+    }
+
+    static void writeGroup(final byte[] out, final int pos, final int bits) {
+        out[pos]     = (byte)(bits >> 16);
+        out[pos + 1] = (byte)(bits >> 8);
+        out[pos + 2] = (byte)bits;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -4,199 +4,167 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 
 public class Base64NIODecoder {
-    private static final byte[] codes = new byte[256];
+    private final DecoderCore core;
+    private int parallelThreshold = ParallelCodec.THRESHOLD;
 
-    static {
-        for (int i = 0; i < 256; i++) {
-            codes[i] = -1;
-        }
-        for (int i = 'A'; i <= 'Z'; i++) {
-            codes[i] = (byte)(i - 'A');
-        }
-        for (int i = 'a'; i <= 'z'; i++) {
-            codes[i] = (byte)(26 + i - 'a');
-        }
-        for (int i = '0'; i <= '9'; i++) {
-            codes[i] = (byte)(52 + i - '0');
-        }
-        codes['+'] = 62;
-        codes['/'] = 63;
+    public Base64NIODecoder() {
+        this(Base64Tables.STANDARD, true);
     }
-    private static final int STATE_EOF = -1;
-    private static final int STATE_START = 0;
-    private static final int STATE_SECOND = 1;
-    private static final int STATE_THIRD = 2;
-    private static final int STATE_PADDING = 3;
-    private static final int STATE_FOURTH = 4;
-    private int state = 0;
-    private int buf = 0;
 
-    void reset() {
-        this.state = 0;
-        this.buf = 0;
+    // Decodes the given alphabet. Without required padding the input may end after the second or third
+    // character of a group, so the output of unpadded encoders can be decoded as is.
+    public Base64NIODecoder(Base64Alphabet alphabet, boolean requirePadding) {
+        this(alphabet.tables(), requirePadding);
     }
 
-    private static boolean isSpace(int ch) {
-        return ch == '\r' || ch == '\n' || ch == '\t' || ch == '\f' || ch == ' ';
+    Base64NIODecoder(Base64Tables tables, boolean requirePadding) {
+        this.core = new DecoderCore(tables, requirePadding);
     }
 
-    private static int decodeChar(int ch) throws IOException {
-        if (ch < 0 || ch >= codes.length) {
-            throw new InvalidCharacterException(ch);
-        } else {
-            int val = codes[ch];
-            if (val >= 0) {
-                return val;
-            } else {
-                throw new InvalidCharacterException(ch);
-            }
-        }
+    void reset() {
+        core.reset();
     }
 
     final void decode(final int ch, final ByteBuffer out) throws IOException {
-        switch (this.state) {
-            case STATE_EOF:
-                break;
-            case STATE_START:
-                if (ch == -1) {
-                    this.state = STATE_EOF;
-                } else if (ch == '=') {
-                    throw new InvalidCharacterException(ch);
-                } else if (!isSpace(ch)) {
-                    this.buf = decodeChar(ch);
-                    this.state = STATE_SECOND;
-                }
-                break;
-            case STATE_SECOND:
-                if (ch == -1) {
-                    throw new IncompleteStreamException(ch);
-                } else if (ch == '=') {
-                    throw new InvalidCharacterException(ch);
-                } else {
-                    int val = decodeChar(ch);
-                    this.buf = (this.buf << 6) | val;
-                    this.state = STATE_THIRD;
-                }
-                break;
-            case STATE_THIRD:
-                if (ch == -1) {
-                    throw new IncompleteStreamException(ch);
-                } else if (ch == '=') {
-                    this.state = STATE_PADDING;
-                } else {
-                    int val = decodeChar(ch);
-                    this.buf = (this.buf << 6) | val;
-                    this.state = STATE_FOURTH;
-                }
-                break;
-            case STATE_PADDING:
-                if (ch == -1) {
-                    throw new IncompleteStreamException(ch);
-                } else if (ch == '=') {
-                    out.put((byte)((this.buf >> 4) & 0xFF));
-                    this.state = STATE_START;
-                } else {
-                    throw new InvalidCharacterException(ch);
-                }
-                break;
-            case STATE_FOURTH:
-                if (ch == -1) {
-                    throw new IncompleteStreamException(ch);
-                } else if (ch == '=') {
-                    int tmp = this.buf;
-                    out.put((byte)((tmp >> 10) & 0xFF));
-                    out.put((byte)((tmp >> 2) & 0xFF));
-                    this.state = STATE_START;
-                } else {
-                    int val = decodeChar(ch);
-                    int tmp = (this.buf << 6) | val;
-                    out.put((byte)((tmp >> 16) & 0xFF));
-                    out.put((byte)((tmp >> 8) & 0xFF));
-                    out.put((byte)(tmp & 0xFF));
-                    this.state = STATE_START;
-                }
-                break;
-            default:
-                throw new IllegalStateException("Invalid State " + this.state);
+        final byte[] chunk = core.chunk();
+        int len = core.decode(ch, chunk, 0, chunk.length);
+        if (len > 0) {
+            out.put(chunk, 0, len);
         }
     }
 
     public boolean isComplete() {
-        return this.state == STATE_START || this.state == STATE_EOF;
+        return core.isComplete();
     }
 
     public void checkComplete() throws IOException {
-        if (!isComplete()) {
-            throw new IncompleteStreamException("Incomplete Base64 Stream");
-        }
+        core.checkComplete();
+    }
+
+    // Each input type has one method per kind of output buffer: heap buffers are decoded into their backing
+    // array, all others through a sink. They return the index of the first unconsumed char, which is only
+    // less than end if out is full.
+
+    private int decodeHeap(final byte[] in, int idx, final int end, final ByteBuffer out) throws IOException {
+        final int offset = out.arrayOffset();
+        idx = core.decode(in, idx, end, out.array(), offset + out.position(), offset + out.limit());
+        out.position(core.position() - offset);
+        return idx;
+    }
+
+    private int decodeDirect(final byte[] in, final int idx, final int end, final ByteBuffer out) throws IOException {
+        return core.decode(in, idx, end, new BufferByteSink(out));
+    }
+
+    private int decodeHeap(final char[] in, int idx, final int end, final ByteBuffer out) throws IOException {
+        final int offset = out.arrayOffset();
+        idx = core.decode(in, idx, end, out.array(), offset + out.position(), offset + out.limit());
+        out.position(core.position() - offset);
+        return idx;
+    }
+
+    private int decodeDirect(final char[] in, final int idx, final int end, final ByteBuffer out) throws IOException {
+        return core.decode(in, idx, end, new BufferByteSink(out));
+    }
+
+    private int decodeHeap(final CharSequence in, int idx, final int end, final ByteBuffer out) throws IOException {
+        final int offset = out.arrayOffset();
+        idx = core.decode(in, idx, end, out.array(), offset + out.position(), offset + out.limit());
+        out.position(core.position() - offset);
+        return idx;
+    }
+
+    private int decodeDirect(final CharSequence in, final int idx, final int end, final ByteBuffer out) throws IOException {
+        return core.decode(in, idx, end, new BufferByteSink(out));
+    }
+
+    private int decodeHeap(final ByteBuffer in, int idx, final int end, final ByteBuffer out) throws IOException {
+        final int offset = out.arrayOffset();
+        idx = core.decode(in, idx, end, out.array(), offset + out.position(), offset + out.limit());
+        out.position(core.position() - offset);
+        return idx;
+    }
+
+    private int decodeDirect(final ByteBuffer in, final int idx, final int end, final ByteBuffer out) throws IOException {
+        return core.decode(in, idx, end, new BufferByteSink(out));
     }
 
     public void decode(byte[] in, int offset, int len, ByteBuffer out) throws IOException {
-        int idx = offset;
-        while (idx < offset + len && this.state != STATE_EOF) {
-            decode(in[idx] & 0xFF, out);
-            idx++;
+        final int end = offset + len;
+        int idx = out.hasArray() ? decodeHeap(in, offset, end, out) : decodeDirect(in, offset, end, out);
+        if (idx < end && !core.isEOF()) {
+            throw new BufferOverflowException();
         }
     }
 
     public void decode(char[] in, int offset, int len, ByteBuffer out) throws IOException {
-        int idx = offset;
-        while (this.state != STATE_EOF && idx < offset + len) {
-            int ch = in[idx];
-            decode(ch, out);
-            idx++;
+        final int end = offset + len;
+        int idx = out.hasArray() ? decodeHeap(in, offset, end, out) : decodeDirect(in, offset, end, out);
+        if (idx < end && !core.isEOF()) {
+            throw new BufferOverflowException();
         }
     }
 
+    // decodes the remaining chars of in as long as the output fits and advances the positions of both buffers
     void decodeImpl(CharBuffer in, ByteBuffer out) throws IOException {
-        int ch;
-        while (in.hasRemaining() && this.state != STATE_EOF) {
-            ch = in.get();
-            decode(ch, out);
+        final int pos = in.position();
+        if (in.hasArray()) {
+            final int offset = in.arrayOffset();
+            final char[] array = in.array();
+            int idx = out.hasArray() ? decodeHeap(array, offset + pos, offset + in.limit(), out) : decodeDirect(array, offset + pos, offset + in.limit(), out);
+            in.position(idx - offset);
+        } else {
+            // relative to the position, see CharBuffer.charAt
+            int len = in.remaining();
+            int idx = out.hasArray() ? decodeHeap(in, 0, len, out) : decodeDirect(in, 0, len, out);
+            in.position(pos + idx);
         }
     }
 
     public void decode(CharBuffer in, ByteBuffer out) throws IOException {
-        if (in.hasArray()) {
-            int offset = in.arrayOffset();
-            int length = in.limit()-offset;
-            decode(in.array(), offset, length, out);
-        }
-        else {
-            decodeImpl(in, out);
+        decodeImpl(in, out);
+        if (in.hasRemaining() && !core.isEOF()) {
+            throw new BufferOverflowException();
         }
     }
 
+    // decodes the remaining bytes of in as long as the output fits and advances the positions of both buffers
     void decodeImpl(ByteBuffer in, ByteBuffer out) throws IOException {
-        int ch;
-        while (in.hasRemaining() && this.state != STATE_EOF) {
-            ch = in.get();
-            decode(ch, out);
+        int idx;
+        if (in.hasArray()) {
+            final int offset = in.arrayOffset();
+            final byte[] array = in.array();
+            final int pos = offset + in.position();
+            final int end = offset + in.limit();
+            idx = (out.hasArray() ? decodeHeap(array, pos, end, out) : decodeDirect(array, pos, end, out)) - offset;
+        } else {
+            final int pos = in.position();
+            final int end = in.limit();
+            idx = out.hasArray() ? decodeHeap(in, pos, end, out) : decodeDirect(in, pos, end, out);
         }
+        in.position(idx);
     }
 
     public void decode(ByteBuffer in, ByteBuffer out) throws IOException {
-        if (in.hasArray()) {
-            int offset = in.arrayOffset();
-            int length = in.limit()-offset;
-            decode(in.array(), offset, length, out);
-        }
-        else {
-            decodeImpl(in, out);
+        decodeImpl(in, out);
+        if (in.hasRemaining() && !core.isEOF()) {
+            throw new BufferOverflowException();
         }
     }
 
     public void decode(FileChannel in, ByteBuffer byteBuffer, ByteBuffer out) throws IOException {
-        byteBuffer.rewind();
-        while (-1 != in.read(byteBuffer) && this.state != STATE_EOF) {
+        byteBuffer.clear();
+        while (-1 != in.read(byteBuffer) && !core.isEOF()) {
             byteBuffer.flip();
             decode(byteBuffer, out);
+            byteBuffer.clear();
         }
     }
 
@@ -207,7 +175,7 @@ public class Base64NIODecoder {
             try {
                 ByteBuffer inBuffer  = directIn  ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
                 ByteBuffer outBuffer = directOut ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
-                while (-1 != in.read(inBuffer) && this.state != -1) {
+                while (-1 != in.read(inBuffer) && !core.isEOF()) {
                     inBuffer.flip();
                     //System.out.println(inBuffer.position() + " " + inBuffer.limit() + " " + outBuffer.position() + " " + outBuffer.limit());
                     decodeImpl(inBuffer, outBuffer);
@@ -229,23 +197,30 @@ public class Base64NIODecoder {
         }
     }
 
+    // walks the input through a series of mapped windows, so files of any size can be decoded
     public void decodeMapped(File inFile, File outFile, int bufferSize, boolean directOut) throws IOException {
         FileChannel in = new FileInputStream(inFile).getChannel();
         try {
             FileChannel out = new FileOutputStream(outFile).getChannel();
             try {
-                int size = (int)in.size();
-                MappedByteBuffer inBuffer = in.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                final long size = in.size();
                 ByteBuffer outBuffer = directOut ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
-                int limit = bufferSize;
-                while (inBuffer.position() < size) {
-                    //System.out.println(inBuffer.position() + " " + inBuffer.limit() + " " + outBuffer.position() + " " + outBuffer.limit());
-                    inBuffer.limit(Math.min(limit, size));
-                    decodeImpl(inBuffer, outBuffer);
-                    outBuffer.flip();
-                    out.write(outBuffer);
-                    outBuffer.clear();
-                    limit += bufferSize;
+                for (long position = 0; position < size && !core.isEOF(); position += Mapping.WINDOW) {
+                    MappedByteBuffer inBuffer = in.map(FileChannel.MapMode.READ_ONLY, position, Math.min(Mapping.WINDOW, size - position));
+                    try {
+                        final int windowSize = inBuffer.limit();
+                        int limit = bufferSize;
+                        while (inBuffer.position() < windowSize) {
+                            inBuffer.limit(Math.min(limit, windowSize));
+                            decodeImpl(inBuffer, outBuffer);
+                            outBuffer.flip();
+                            out.write(outBuffer);
+                            outBuffer.clear();
+                            limit += bufferSize;
+                        }
+                    } finally {
+                        Mapping.unmap(inBuffer);
+                    }
                 }
             }
             finally {
@@ -255,7 +230,36 @@ public class Base64NIODecoder {
         finally {
             in.close();
         }
+    }
 
+    // files of at least this many bytes are decoded on multiple threads by decodeParallel
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
     }
 
+    // Decodes a complete file like decodeMapped on the common fork/join pool. The input is split into regions at
+    // group boundaries and each region is mapped and decoded directly into its part of the pre-sized output file.
+    // Input that only the state machine handles correctly, like padding in the middle, goes through decodeMapped.
+    public void decodeParallel(File inFile, File outFile) throws IOException {
+        final int threshold = this.parallelThreshold;
+        boolean done = false;
+        if (core.isGroupStart() && inFile.length() >= threshold) {
+            FileChannel in = new FileInputStream(inFile).getChannel();
+            try {
+                ParallelCodec.FileDecoding decoding = new ParallelCodec.FileDecoding(in, outFile);
+                try {
+                    long size = in.size();
+                    done = ParallelCodec.decode(decoding, core, 0, size, ParallelCodec.fileSegments(size, threshold));
+                } finally {
+                    decoding.close();
+                }
+            } finally {
+                in.close();
+            }
+        }
+        if (!done) {
+            decodeMapped(inFile, outFile, 32 * 1024, true);
+            checkComplete();
+        }
+    }
 }
@@ -1,38 +1,163 @@
 package net.jhorstmann.base64;
 
+import java.io.Closeable;
+import java.io.Flushable;
 import java.io.IOException;
 import java.io.OutputStream;
 
+// Encodes the written bytes to an OutputStream or an Appendable. Written bytes are collected in a buffer and
+// encoded in bulk once it is full. By default flush only flushes the target and keeps collecting, in low latency
+// mode it also encodes all buffered bytes, so everything but the last partial group reaches the target.
+// close writes the padding and closes the target.
 public class Base64OutputStream extends OutputStream {
 
-    private Base64StreamEncoder encoder;
-    private Appendable out;
+    private static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
 
-    public Base64OutputStream(Base64StreamEncoder encoder, Appendable out) {
+    private final Base64StreamEncoder encoder;
+    // exactly one of out and appendable is set
+    private final OutputStream out;
+    private final Appendable appendable;
+    private final byte[] buffer;
+    private int count;
+    private byte[] encoded;
+    private boolean lowLatency;
+    private boolean closed;
+
+    private Base64OutputStream(Base64StreamEncoder encoder, OutputStream out, Appendable appendable, int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size " + bufferSize + " too small");
+        }
         this.encoder = encoder;
         this.out = out;
+        this.appendable = appendable;
+        this.buffer = new byte[bufferSize];
+    }
+
+    public Base64OutputStream(Base64StreamEncoder encoder, Appendable out, int bufferSize) {
+        this(encoder, null, out, bufferSize);
+    }
+
+    public Base64OutputStream(Base64StreamEncoder encoder, OutputStream out, int bufferSize) {
+        this(encoder, out, null, bufferSize);
+    }
+
+    public Base64OutputStream(Base64StreamEncoder encoder, Appendable out) {
+        this(encoder, null, out, DEFAULT_BUFFER_SIZE);
     }
 
     public Base64OutputStream(Appendable out) {
-        this(new Base64StreamEncoder(), out);
+        this(new Base64StreamEncoder(), null, out, DEFAULT_BUFFER_SIZE);
     }
 
     public Base64OutputStream(OutputStream out) {
-        this(new Base64StreamEncoder(), new ByteAppendable(out));
+        this(new Base64StreamEncoder(), out, null, DEFAULT_BUFFER_SIZE);
+    }
+
+    public boolean isLowLatency() {
+        return lowLatency;
+    }
+
+    public void setLowLatency(boolean lowLatency) {
+        this.lowLatency = lowLatency;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    // Encodes b[off..off+len) directly to the target. An OutputStream gets large writes in slices of the buffer
+    // size, so the encoded array never outgrows the encoding of a single buffer.
+    private void encode(byte[] b, int off, int len) throws IOException {
+        if (out != null) {
+            while (len > 0) {
+                int slice = Math.min(len, buffer.length);
+                int required = (int)encoder.outputLength(slice);
+                if (encoded == null || encoded.length < required) {
+                    encoded = new byte[Math.max(required, (int)encoder.outputLength(buffer.length) + 8)];
+                }
+                out.write(encoded, 0, encoder.encode(b, off, slice, encoded, 0));
+                off += slice;
+                len -= slice;
+            }
+        } else {
+            encoder.encode(b, off, len, appendable);
+        }
+    }
+
+    private void encodeBuffer() throws IOException {
+        if (count > 0) {
+            encode(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (count == buffer.length) {
+            encodeBuffer();
+        }
+        buffer[count++] = (byte)b;
     }
 
     @Override
     public void write(byte[] b) throws IOException {
-        encoder.encode(b, out);
+        write(b, 0, b.length);
     }
 
     @Override
     public void write(byte[] b, int off, int len) throws IOException {
-        encoder.encode(b, off, len, out);
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        ensureOpen();
+        if (len >= buffer.length) {
+            encodeBuffer();
+            encode(b, off, len);
+        } else {
+            if (len > buffer.length - count) {
+                encodeBuffer();
+            }
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+        }
     }
 
     @Override
-    public void write(int b) throws IOException {
-        encoder.encode(b, out);
+    public void flush() throws IOException {
+        ensureOpen();
+        if (lowLatency) {
+            encodeBuffer();
+        }
+        if (out != null) {
+            out.flush();
+        } else if (appendable instanceof Flushable) {
+            ((Flushable)appendable).flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            encodeBuffer();
+            if (out != null) {
+                byte[] tail = new byte[4];
+                out.write(tail, 0, encoder.encodeFinal(tail, 0));
+            } else {
+                encoder.encodeFinal(appendable);
+            }
+        } finally {
+            closed = true;
+            if (out != null) {
+                out.close();
+            } else if (appendable instanceof Closeable) {
+                ((Closeable)appendable).close();
+            }
+        }
     }
 }
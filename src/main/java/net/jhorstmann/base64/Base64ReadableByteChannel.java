@@ -0,0 +1,94 @@
+package net.jhorstmann.base64;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+
+// Decodes the base64 characters read from another channel. Works with non-blocking channels, a read returns 0
+// when the underlying channel has nothing available and no decoded bytes are pending.
+public class Base64ReadableByteChannel implements ReadableByteChannel {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+
+    private final Base64NIODecoder decoder;
+    private final ReadableByteChannel in;
+    // encoded input, in read mode between calls
+    private final ByteBuffer input;
+    // decoded bytes of a group that did not fit into the last destination, in read mode between calls
+    private final ByteBuffer pending;
+    private boolean eof;
+    private boolean open = true;
+
+    public Base64ReadableByteChannel(Base64NIODecoder decoder, ReadableByteChannel in, int bufferSize) {
+        this.decoder = decoder;
+        this.in = in;
+        this.input = ByteBuffer.allocateDirect(bufferSize);
+        this.input.flip();
+        this.pending = ByteBuffer.allocate(3);
+        this.pending.flip();
+    }
+
+    public Base64ReadableByteChannel(ReadableByteChannel in) {
+        this(new Base64NIODecoder(), in, DEFAULT_BUFFER_SIZE);
+    }
+
+    private static int transfer(ByteBuffer src, ByteBuffer dst) {
+        int len = Math.min(src.remaining(), dst.remaining());
+        for (int i = 0; i < len; i++) {
+            dst.put(src.get());
+        }
+        return len;
+    }
+
+    public int read(ByteBuffer dst) throws IOException {
+        if (!this.open) {
+            throw new ClosedChannelException();
+        }
+        int count = 0;
+        while (true) {
+            count += transfer(this.pending, dst);
+            if (!dst.hasRemaining()) {
+                return count;
+            }
+            if (this.input.hasRemaining()) {
+                if (dst.remaining() >= 3) {
+                    int pos = dst.position();
+                    this.decoder.decodeImpl(this.input, dst);
+                    count += dst.position() - pos;
+                } else {
+                    this.pending.clear();
+                    this.decoder.decodeImpl(this.input, this.pending);
+                    this.pending.flip();
+                }
+                continue;
+            }
+            if (count > 0) {
+                return count;
+            }
+            if (this.eof) {
+                this.decoder.checkComplete();
+                return -1;
+            }
+            this.input.clear();
+            int len = this.in.read(this.input);
+            this.input.flip();
+            if (len < 0) {
+                this.eof = true;
+            } else if (len == 0) {
+                return 0;
+            }
+        }
+    }
+
+    public boolean isOpen() {
+        return this.open;
+    }
+
+    public void close() throws IOException {
+        if (this.open) {
+            this.open = false;
+            this.in.close();
+        }
+    }
+}
@@ -2,7 +2,6 @@ package net.jhorstmann.base64;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -10,147 +9,145 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 public class Base64StreamDecoder {
 
-    private static final byte[] codes = new byte[256];
+    private final DecoderCore core;
+    private int parallelThreshold = ParallelCodec.THRESHOLD;
 
-    static {
-        for (int i = 0; i < 256; i++) {
-            codes[i] = -1;
-        }
-        for (int i = 'A'; i <= 'Z'; i++) {
-            codes[i] = (byte)(i - 'A');
+    public Base64StreamDecoder() {
+        this(Base64Tables.STANDARD, true);
+    }
+
+    // Decodes the given alphabet. Without required padding the input may end after the second or third
+    // character of a group, so the output of unpadded encoders can be decoded as is.
+    public Base64StreamDecoder(Base64Alphabet alphabet, boolean requirePadding) {
+        this(alphabet.tables(), requirePadding);
+    }
+
+    Base64StreamDecoder(Base64Tables tables, boolean requirePadding) {
+        this.core = new DecoderCore(tables, requirePadding);
+    }
+
+    void reset() {
+        core.reset();
+    }
+
+    DecoderCore core() {
+        return core;
+    }
+
+    final void decode(final int ch, final OutputStream out) throws IOException {
+        final byte[] chunk = core.chunk();
+        int len = core.decode(ch, chunk, 0, chunk.length);
+        if (len > 0) {
+            out.write(chunk, 0, len);
         }
-        for (int i = 'a'; i <= 'z'; i++) {
-            codes[i] = (byte)(26 + i - 'a');
+    }
+
+    // Bounds the output of len characters ending with the given padding, exact for input without whitespace.
+    // The one-shot methods decode straight into an array of this size and only trim it for wrapped lines.
+    private int maxLength(int len, int padding) {
+        return (int)core.decodedLength(len - padding);
+    }
+
+    private byte[] trim(byte[] out) {
+        int len = core.position();
+        return len == out.length ? out : Arrays.copyOf(out, len);
+    }
+
+    // Checks that the whole input was decoded and the stream is complete, returns the number of bytes written
+    // at outOffset by the last bulk decode.
+    private int finish(int idx, int end, int outOffset) throws IOException {
+        if (idx < end && !core.isEOF()) {
+            throw new IndexOutOfBoundsException("Capacity exceeded");
         }
-        for (int i = '0'; i <= '9'; i++) {
-            codes[i] = (byte)(52 + i - '0');
+        checkComplete();
+        return core.position() - outOffset;
+    }
+
+    private static void checkCapacity(long required, byte[] out, int outOffset) {
+        if (required > out.length - outOffset) {
+            throw new IndexOutOfBoundsException("Capacity (" + (out.length - outOffset) + ") exceeded");
         }
-        codes['+'] = 62;
-        codes['/'] = 63;
-    }
-    private static final int STATE_EOF = -1;
-    private static final int STATE_START = 0;
-    private static final int STATE_SECOND = 1;
-    private static final int STATE_THIRD = 2;
-    private static final int STATE_PADDING = 3;
-    private static final int STATE_FOURTH = 4;
-    private int state = 0;
-    private int buf = 0;
+    }
 
-    void reset() {
-        this.state = 0;
-        this.buf = 0;
+    // The exact number of bytes the input decodes to when it completes the stream, accounting for whitespace,
+    // line separators, padding and the current partial group. Scans the input once.
+
+    public int decodedLength(byte[] in, int offset, int len) {
+        return (int)core.decodedLength(in, offset, offset + len);
     }
 
-    private static boolean isSpace(int ch) {
-        return ch == '\r' || ch == '\n' || ch == '\t' || ch == '\f' || ch == ' ';
+    public int decodedLength(byte[] in) {
+        return decodedLength(in, 0, in.length);
     }
 
-    private static int decodeChar(int ch) throws IOException {
-        if (ch < 0 || ch >= codes.length) {
-            throw new InvalidCharacterException(ch);
-        } else {
-            int val = codes[ch];
-            if (val >= 0) {
-                return val;
-            } else {
-                throw new InvalidCharacterException(ch);
-            }
+    public int decodedLength(char[] in, int offset, int len) {
+        return (int)core.decodedLength(in, offset, offset + len);
+    }
+
+    public int decodedLength(char[] in) {
+        return decodedLength(in, 0, in.length);
+    }
+
+    public int decodedLength(CharSequence in) {
+        return (int)core.decodedLength(in, 0, in.length());
+    }
+
+    // The decodeInto methods decode a complete input into a presized or pooled buffer without allocating output
+    // and return the number of bytes written. If out might be too small the input is measured first, so
+    // IndexOutOfBoundsException is thrown before anything is written.
+
+    public int decodeInto(byte[] in, int offset, int len, byte[] out, int outOffset) throws IOException {
+        if (maxLength(len, DecoderCore.trailingPadding(in, offset, offset + len)) > out.length - outOffset) {
+            checkCapacity(decodedLength(in, offset, len), out, outOffset);
         }
+        return finish(core.decode(in, offset, offset + len, out, outOffset, out.length), offset + len, outOffset);
     }
 
-    final void decode(final int ch, final OutputStream out) throws IOException {
-        switch (this.state) {
-            case STATE_EOF:
-                break;
-            case STATE_START:
-                if (ch == -1) {
-                    this.state = STATE_EOF;
-                } else if (ch == '=') {
-                    throw new InvalidCharacterException(ch);
-                } else if (!isSpace(ch)) {
-                    this.buf = decodeChar(ch);
-                    this.state = STATE_SECOND;
-                }
-                break;
-            case STATE_SECOND:
-                if (ch == -1) {
-                    throw new IncompleteStreamException(ch);
-                } else if (ch == '=') {
-                    throw new InvalidCharacterException(ch);
-                } else {
-                    int val = decodeChar(ch);
-                    this.buf = (this.buf << 6) | val;
-                    this.state = STATE_THIRD;
-                }
-                break;
-            case STATE_THIRD:
-                if (ch == -1) {
-                    throw new IncompleteStreamException(ch);
-                } else if (ch == '=') {
-                    this.state = STATE_PADDING;
-                } else {
-                    int val = decodeChar(ch);
-                    this.buf = (this.buf << 6) | val;
-                    this.state = STATE_FOURTH;
-                }
-                break;
-            case STATE_PADDING:
-                if (ch == -1) {
-                    throw new IncompleteStreamException(ch);
-                } else if (ch == '=') {
-                    out.write((this.buf >> 4) & 0xFF);
-                    this.state = STATE_START;
-                } else {
-                    throw new InvalidCharacterException(ch);
-                }
-                break;
-            case STATE_FOURTH:
-                if (ch == -1) {
-                    throw new IncompleteStreamException(ch);
-                } else if (ch == '=') {
-                    int tmp = this.buf;
-                    out.write((tmp >> 10) & 0xFF);
-                    out.write((tmp >> 2) & 0xFF);
-                    this.state = STATE_START;
-                } else {
-                    int val = decodeChar(ch);
-                    int tmp = (this.buf << 6) | val;
-                    out.write((tmp >> 16) & 0xFF);
-                    out.write((tmp >> 8) & 0xFF);
-                    out.write((tmp) & 0xFF);
-                    this.state = STATE_START;
-                }
-                break;
-            default:
-                throw new IllegalStateException("Invalid State " + this.state);
+    public int decodeInto(byte[] in, byte[] out, int outOffset) throws IOException {
+        return decodeInto(in, 0, in.length, out, outOffset);
+    }
+
+    public int decodeInto(char[] in, int offset, int len, byte[] out, int outOffset) throws IOException {
+        if (maxLength(len, DecoderCore.trailingPadding(in, offset, offset + len)) > out.length - outOffset) {
+            checkCapacity(decodedLength(in, offset, len), out, outOffset);
+        }
+        return finish(core.decode(in, offset, offset + len, out, outOffset, out.length), offset + len, outOffset);
+    }
+
+    public int decodeInto(char[] in, byte[] out, int outOffset) throws IOException {
+        return decodeInto(in, 0, in.length, out, outOffset);
+    }
+
+    public int decodeInto(CharSequence in, byte[] out, int outOffset) throws IOException {
+        final int len = in.length();
+        if (maxLength(len, DecoderCore.trailingPadding(in, 0, len)) > out.length - outOffset) {
+            checkCapacity(decodedLength(in), out, outOffset);
         }
+        int idx = in instanceof String
+                ? core.decode((String)in, 0, len, out, outOffset, out.length)
+                : core.decode(in, 0, len, out, outOffset, out.length);
+        return finish(idx, len, outOffset);
     }
 
     public boolean isEOF() {
-        return this.state == STATE_EOF;
+        return core.isEOF();
     }
 
     public boolean isComplete() {
-        return this.state == STATE_START || this.state == STATE_EOF;
+        return core.isComplete();
     }
 
     public void checkComplete() throws IOException {
-        if (!isComplete()) {
-            throw new IncompleteStreamException("Incomplete Base64 Stream");
-        }
+        core.checkComplete();
     }
 
     public void decode(char[] in, int offset, int len, OutputStream out) throws IOException {
-        int idx = offset;
-        while (this.state != STATE_EOF && idx < offset + len) {
-            int ch = in[idx];
-            decode(ch, out);
-            idx++;
-        }
+        core.decode(in, offset, offset + len, new StreamByteSink(out));
     }
 
     public void decode(char[] in, OutputStream out) throws IOException {
@@ -159,24 +156,19 @@ public class Base64StreamDecoder {
     }
 
     public byte[] decode(char[] in, int offset, int len) throws IOException {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        decode(in, offset, len, out);
-        return out.toByteArray();
+        byte[] out = new byte[maxLength(len, DecoderCore.trailingPadding(in, offset, offset + len))];
+        core.decode(in, offset, offset + len, out, 0, out.length);
+        return trim(out);
     }
 
     public byte[] decode(char[] in) throws IOException {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        decode(in, out);
+        byte[] result = decode(in, 0, in.length);
         checkComplete();
-        return out.toByteArray();
+        return result;
     }
 
     public void decode(byte[] in, int offset, int len, OutputStream out) throws IOException {
-        int idx = offset;
-        while (idx < offset + len && this.state != STATE_EOF) {
-            decode(in[idx] & 0xFF, out);
-            idx++;
-        }
+        core.decode(in, offset, offset + len, new StreamByteSink(out));
     }
 
     public void decode(byte[] in, OutputStream out) throws IOException {
@@ -185,15 +177,62 @@ public class Base64StreamDecoder {
     }
 
     public byte[] decode(byte[] bytes) throws IOException {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        decode(bytes, 0, bytes.length, out);
+        byte[] out = new byte[maxLength(bytes.length, DecoderCore.trailingPadding(bytes, 0, bytes.length))];
+        core.decode(bytes, 0, bytes.length, out, 0, out.length);
+        checkComplete();
+        return trim(out);
+    }
+
+    // inputs of at least this many characters are decoded on multiple threads by the decodeParallel methods
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    // Decodes a complete stream like decode(byte[]) using the common fork/join pool. Only starts a new stream,
+    // input that continues a partially decoded group goes through the sequential path.
+    public byte[] decodeParallel(byte[] in, int offset, int len) throws IOException {
+        if (len >= this.parallelThreshold && core.isGroupStart()) {
+            ParallelCodec.ArrayDecoding decoding = ParallelCodec.ArrayDecoding.of(in);
+            if (ParallelCodec.decode(decoding, core, offset, offset + len, ParallelCodec.segments(len, this.parallelThreshold))) {
+                return decoding.out;
+            }
+        }
+        byte[] out = new byte[maxLength(len, DecoderCore.trailingPadding(in, offset, offset + len))];
+        core.decode(in, offset, offset + len, out, 0, out.length);
+        checkComplete();
+        return trim(out);
+    }
+
+    public byte[] decodeParallel(byte[] in) throws IOException {
+        return decodeParallel(in, 0, in.length);
+    }
+
+    // decodes the remaining bytes of in and advances its position
+    public byte[] decodeParallel(ByteBuffer in) throws IOException {
+        if (in.hasArray()) {
+            int offset = in.arrayOffset();
+            byte[] result = decodeParallel(in.array(), offset + in.position(), in.remaining());
+            in.position(in.limit());
+            return result;
+        }
+        final int pos = in.position();
+        final int end = in.limit();
+        if (end - pos >= this.parallelThreshold && core.isGroupStart()) {
+            ParallelCodec.ArrayDecoding decoding = ParallelCodec.ArrayDecoding.of(in);
+            if (ParallelCodec.decode(decoding, core, pos, end, ParallelCodec.segments(end - pos, this.parallelThreshold))) {
+                in.position(end);
+                return decoding.out;
+            }
+        }
+        byte[] out = new byte[maxLength(end - pos, DecoderCore.trailingPadding(in, pos, end))];
+        in.position(core.decode(in, pos, end, out, 0, out.length));
         checkComplete();
-        return out.toByteArray();
+        return trim(out);
     }
 
     public void decode(InputStream in, OutputStream out) throws IOException {
         int ch;
-        while ((ch = in.read()) != -1 && this.state != STATE_EOF) {
+        while ((ch = in.read()) != -1 && !core.isEOF()) {
             decode(ch, out);
         }
         checkComplete();
@@ -210,7 +249,7 @@ public class Base64StreamDecoder {
 
     public void decode(Reader in, OutputStream out) throws IOException {
         int ch;
-        while ((ch = in.read()) != -1 && this.state != STATE_EOF) {
+        while ((ch = in.read()) != -1 && !core.isEOF()) {
             decode(ch, out);
         }
         checkComplete();
@@ -226,19 +265,24 @@ public class Base64StreamDecoder {
     }
 
     public void decode(CharSequence str, OutputStream out) throws IOException {
-        int len = str.length();
-        int idx = 0;
-        while (idx < len && this.state != STATE_EOF) {
-            decode(str.charAt(idx), out);
-            idx++;
+        if (str instanceof String) {
+            core.decode((String)str, 0, str.length(), new StreamByteSink(out));
+        } else {
+            core.decode(str, 0, str.length(), new StreamByteSink(out));
         }
         checkComplete();
     }
 
     public byte[] decode(CharSequence str) throws IOException {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        decode(str, out);
-        return out.toByteArray();
+        final int len = str.length();
+        byte[] out = new byte[maxLength(len, DecoderCore.trailingPadding(str, 0, len))];
+        if (str instanceof String) {
+            core.decode((String)str, 0, len, out, 0, out.length);
+        } else {
+            core.decode(str, 0, len, out, 0, out.length);
+        }
+        checkComplete();
+        return trim(out);
     }
 
     public void decode(File inFile, File outFile) throws IOException {
@@ -1,18 +1,28 @@
 package net.jhorstmann.base64;
 
-import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 
 public class Base64StreamEncoder {
-    private static final char[] alphabet =
-            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
     private static final int DEFAULT_LINE_WIDTH = 76;
-    private static final char DEFAULT_LINE_SEPARATOR = '\n';
+    private static final String DEFAULT_LINE_SEPARATOR = "\n";
+    static final int MIME_LINE_WIDTH = 76;
+    static final String MIME_LINE_SEPARATOR = "\r\n";
+    // without a separator lines only bound the size of the bulk steps
+    private static final int UNBROKEN_LINE_WIDTH = 4096;
+    private static final int CHUNK_SIZE = 4096;
 
     private static final int STATE_EOF   = -1;
     private static final int STATE_START = 0;
@@ -20,8 +30,64 @@ public class Base64StreamEncoder {
     private int state;
     private int buffer;
     private int lineIdx;
-    private int lineWidth = DEFAULT_LINE_WIDTH;
-    private char lineSeparator = DEFAULT_LINE_SEPARATOR;
+    private final Base64Tables tables;
+    private final boolean padding;
+    private final int lineWidth;
+    private final char[] lineSeparator;
+    private char[] chunk;
+    private final char[] pending;
+    private int parallelThreshold = ParallelCodec.THRESHOLD;
+
+    // encodes in[idx..end) and writes the characters at pos of the output, returns their number
+    private abstract static class Block {
+        abstract int encode(Base64StreamEncoder encoder, int idx, int end, int pos);
+    }
+
+    public Base64StreamEncoder() {
+        this(Base64Tables.STANDARD, true, DEFAULT_LINE_WIDTH, DEFAULT_LINE_SEPARATOR);
+    }
+
+    // Encodes to a single line using the given alphabet. Without padding the last group ends after its
+    // second or third character.
+    public Base64StreamEncoder(Base64Alphabet alphabet, boolean padding) {
+        this(alphabet.tables(), padding, 0, "");
+    }
+
+    // Encodes lines of at most lineWidth characters, rounded down to whole groups, separated by lineSeparator.
+    // An empty separator disables line breaks. Separators may not contain characters of the alphabet or '='.
+    public Base64StreamEncoder(Base64Alphabet alphabet, boolean padding, int lineWidth, String lineSeparator) {
+        this(alphabet.tables(), padding, checkLineWidth(alphabet.tables(), lineWidth, lineSeparator), lineSeparator);
+    }
+
+    // RFC 2045 lines of 76 characters separated by CRLF
+    public static Base64StreamEncoder mime() {
+        return new Base64StreamEncoder(Base64Tables.STANDARD, true, MIME_LINE_WIDTH, MIME_LINE_SEPARATOR);
+    }
+
+    static int checkLineWidth(Base64Tables tables, int lineWidth, String lineSeparator) {
+        if (lineSeparator.isEmpty()) {
+            return lineWidth;
+        }
+        if (lineWidth < 4) {
+            throw new IllegalArgumentException("Line width " + lineWidth + " too small");
+        }
+        for (int i = 0; i < lineSeparator.length(); i++) {
+            char ch = lineSeparator.charAt(i);
+            if (ch == '=' || (ch < 256 && tables.codes3[ch] >= 0)) {
+                throw new IllegalArgumentException("Invalid line separator character " + Base64Exception.characterName(ch));
+            }
+        }
+        return lineWidth / 4 * 4;
+    }
+
+    // an empty separator disables line breaks
+    Base64StreamEncoder(Base64Tables tables, boolean padding, int lineWidth, String lineSeparator) {
+        this.tables = tables;
+        this.padding = padding;
+        this.lineWidth = lineSeparator.isEmpty() ? UNBROKEN_LINE_WIDTH : lineWidth;
+        this.lineSeparator = lineSeparator.toCharArray();
+        this.pending = new char[this.lineSeparator.length + 3];
+    }
 
     void reset() {
         this.state = 0;
@@ -29,8 +95,12 @@ public class Base64StreamEncoder {
         this.lineIdx = 0;
     }
 
-    final void encode(final int ch, final Appendable out) throws IOException {
-        //System.out.println(this.state + " " + ch + " " + this.buffer);
+    // runs a single byte through the state machine, the emitted characters are stored in pending,
+    // returns their number
+    private int step(final int ch) {
+        final char[] pending = this.pending;
+        final char[] alphabet = this.tables.alphabet;
+        int count = 0;
         switch (this.state) {
             case STATE_EOF:
                 break;
@@ -40,10 +110,10 @@ public class Base64StreamEncoder {
                 }
                 else {
                     if (this.lineIdx >= this.lineWidth) {
-                        out.append(this.lineSeparator);
+                        count = separator(pending, count);
                         this.lineIdx = 0;
                     }
-                    out.append(alphabet[(ch >>> 2)]);
+                    pending[count++] = alphabet[(ch >>> 2)];
                     this.lineIdx++;
                     this.buffer = (ch & 3) << 4;
                     this.state = 1;
@@ -51,14 +121,16 @@ public class Base64StreamEncoder {
                 break;
             case 1:
                 if (ch == -1) {
-                    out.append(alphabet[this.buffer]);
-                    out.append('=');
-                    out.append('=');
-                    this.lineIdx += 3;
+                    pending[count++] = alphabet[this.buffer];
+                    if (this.padding) {
+                        pending[count++] = '=';
+                        pending[count++] = '=';
+                    }
+                    this.lineIdx += count;
                     this.state = STATE_EOF;
                 }
                 else {
-                    out.append(alphabet[this.buffer | (ch >>> 4)]);
+                    pending[count++] = alphabet[this.buffer | (ch >>> 4)];
                     this.lineIdx++;
                     this.buffer = (ch & 15) << 2;
                     this.state = 2;
@@ -66,14 +138,16 @@ public class Base64StreamEncoder {
                 break;
             case 2:
                 if (ch == -1) {
-                    out.append(alphabet[this.buffer]);
-                    out.append('=');
-                    this.lineIdx += 2;
+                    pending[count++] = alphabet[this.buffer];
+                    if (this.padding) {
+                        pending[count++] = '=';
+                    }
+                    this.lineIdx += count;
                     this.state = STATE_EOF;
                 }
                 else {
-                    out.append(alphabet[this.buffer | (ch >>> 6)]);
-                    out.append(alphabet[ch & 63]);
+                    pending[count++] = alphabet[this.buffer | (ch >>> 6)];
+                    pending[count++] = alphabet[ch & 63];
                     this.lineIdx += 2;
                     this.state = STATE_START;
                 }
@@ -82,11 +156,252 @@ public class Base64StreamEncoder {
                 throw new IllegalStateException("Invalid State " + this.state);
 
         }
+        return count;
+    }
+
+    // writes the line separator to out at pos, returns the new position
+    private int separator(final char[] out, int pos) {
+        return Base64Kernel.writeSeparator(this.lineSeparator, out, pos);
+    }
+
+    private int separator(final byte[] out, int pos) {
+        return Base64Kernel.writeSeparator(this.lineSeparator, out, pos);
+    }
+
+    // most characters a single input byte can produce, a line separator and the next character
+    int maxCharsPerByte() {
+        return Math.max(3, this.lineSeparator.length + 1);
+    }
+
+    final void encode(final int ch, final Appendable out) throws IOException {
+        int count = step(ch);
+        for (int i = 0; i < count; i++) {
+            out.append(this.pending[i]);
+        }
+    }
+
+    private int encode(final int ch, final byte[] out, int pos) {
+        int count = step(ch);
+        for (int i = 0; i < count; i++) {
+            out[pos++] = (byte)this.pending[i];
+        }
+        return pos;
+    }
+
+    private int encode(final int ch, final ByteBuffer out, int pos) {
+        int count = step(ch);
+        for (int i = 0; i < count; i++) {
+            out.put(pos++, (byte)this.pending[i]);
+        }
+        return pos;
+    }
+
+    private int encode(final int ch, final char[] out, int pos) {
+        int count = step(ch);
+        for (int i = 0; i < count; i++) {
+            out[pos++] = this.pending[i];
+        }
+        return pos;
+    }
+
+    // exact number of characters the next length input bytes produce, not including encodeFinal
+    long outputLength(long length) {
+        if (this.state == STATE_EOF || length <= 0) {
+            return 0;
+        }
+        long chars = 0;
+        int lineIdx = this.lineIdx;
+        if (this.state == 1) {
+            chars++;
+            lineIdx++;
+            length--;
+            if (length == 0) {
+                return chars;
+            }
+        }
+        if (this.state != STATE_START) {
+            chars += 2;
+            lineIdx += 2;
+            length--;
+        }
+        long starts = (length + 2) / 3;
+        long rest = length % 3;
+        chars += length / 3 * 4 + rest;
+        // separators are emitted before a group once the line is full
+        long first = lineIdx >= lineWidth ? 0 : (lineWidth - lineIdx + 3) / 4;
+        if (starts > first) {
+            chars += (1 + (starts - 1 - first) / ((lineWidth + 3) / 4)) * lineSeparator.length;
+        }
+        return chars;
+    }
+
+    // Exact number of characters that encoding the next length bytes and finishing the stream produces,
+    // including line separators and padding. encodeInto writes exactly this many.
+    public long encodedLength(long length) {
+        return outputLength(length) + (this.state == STATE_EOF ? 0 : finalLength((this.state + length) % 3));
     }
 
-    private int expectedLength(int length) {
-        int tmp = (length+3)*4/3; // round up
-        return tmp + tmp/lineWidth + 2; // add newlines and padding
+    // number of characters encodeFinal produces
+    private int finalLength() {
+        return this.state == STATE_EOF ? 0 : finalLength(this.state);
+    }
+
+    // number of characters encodeFinal produces in the given state
+    private int finalLength(long state) {
+        return state == 0 ? 0 : !this.padding ? 1 : state == 1 ? 3 : 2;
+    }
+
+    // hands the chunk to out with a single bulk call for the common targets
+    private static void append(final char[] chunk, final int len, final Appendable out) throws IOException {
+        if (out instanceof StringBuilder) {
+            ((StringBuilder)out).append(chunk, 0, len);
+        } else if (out instanceof FixedSizeStringBuilder) {
+            ((FixedSizeStringBuilder)out).append(chunk, 0, len);
+        } else if (out instanceof Writer) {
+            ((Writer)out).write(chunk, 0, len);
+        } else if (out instanceof CharBuffer) {
+            ((CharBuffer)out).put(chunk, 0, len);
+        } else if (out instanceof StringBuffer) {
+            ((StringBuffer)out).append(chunk, 0, len);
+        } else {
+            out.append(CharBuffer.wrap(chunk, 0, len));
+        }
+    }
+
+    private void reserve(final long length, final Appendable out) {
+        if (out instanceof StringBuilder) {
+            StringBuilder builder = (StringBuilder)out;
+            builder.ensureCapacity((int)Math.min(Integer.MAX_VALUE - 8, builder.length() + outputLength(length)));
+        } else if (out instanceof StringBuffer) {
+            StringBuffer buffer = (StringBuffer)out;
+            buffer.ensureCapacity((int)Math.min(Integer.MAX_VALUE - 8, buffer.length() + outputLength(length)));
+        }
+    }
+
+    // encodes all complete groups of either array or buffer starting in STATE_START,
+    // returns the index of the first unconsumed byte
+    private int encodeBlock(final byte[] array, final ByteBuffer buffer, int idx, final int end, final Appendable out) throws IOException {
+        final Base64Kernel kernel = array != null
+                ? KernelSelector.forArray(this.tables, end - idx) : KernelSelector.forBuffer(this.tables, buffer, end - idx);
+        char[] chunk = this.chunk;
+        if (chunk == null) {
+            chunk = this.chunk = new char[CHUNK_SIZE];
+        }
+        final int lineWidth = this.lineWidth;
+        int lineIdx = this.lineIdx;
+        int pos = 0;
+        while (end - idx >= 3) {
+            if (chunk.length - pos < this.lineSeparator.length + 4) {
+                append(chunk, pos, out);
+                pos = 0;
+            }
+            if (lineIdx >= lineWidth) {
+                pos = separator(chunk, pos);
+                lineIdx = 0;
+            }
+            int groups = Math.min((lineWidth - lineIdx + 3) / 4, (end - idx) / 3);
+            groups = Math.min(groups, (chunk.length - pos) / 4);
+            if (array != null) {
+                kernel.encode(array, idx, groups, chunk, pos);
+            } else {
+                kernel.encode(buffer, idx, groups, chunk, pos);
+            }
+            idx += groups * 3;
+            pos += groups * 4;
+            lineIdx += groups * 4;
+        }
+        if (pos > 0) {
+            append(chunk, pos, out);
+        }
+        this.lineIdx = lineIdx;
+        return idx;
+    }
+
+    // Encodes all complete groups starting in STATE_START into out[pos..], returns the new output position.
+    // After the rest of the current line, whole lines including their separators go through a single kernel call.
+    private int encodeBlock(final byte[] in, int idx, final int end, final byte[] out, int pos) {
+        final Base64Kernel kernel = KernelSelector.forArray(this.tables, end - idx);
+        final int lineWidth = this.lineWidth;
+        final int groupsPerLine = (lineWidth + 3) / 4;
+        int lineIdx = this.lineIdx;
+        if (lineIdx < lineWidth) {
+            int groups = Math.min((lineWidth - lineIdx + 3) / 4, (end - idx) / 3);
+            kernel.encode(in, idx, groups, out, pos);
+            idx += groups * 3;
+            pos += groups * 4;
+            lineIdx += groups * 4;
+        }
+        // the current line is full unless the input is consumed
+        final int lines = (end - idx) / (groupsPerLine * 3);
+        if (lines > 0) {
+            kernel.encodeLines(in, idx, lines, groupsPerLine, this.lineSeparator, out, pos);
+            idx += lines * groupsPerLine * 3;
+            pos += lines * (groupsPerLine * 4 + this.lineSeparator.length);
+            lineIdx = groupsPerLine * 4;
+        }
+        if (end - idx >= 3) {
+            int groups = (end - idx) / 3;
+            pos = separator(out, pos);
+            kernel.encode(in, idx, groups, out, pos);
+            pos += groups * 4;
+            lineIdx = groups * 4;
+        }
+        this.lineIdx = lineIdx;
+        return pos;
+    }
+
+    // Encodes all complete groups starting in STATE_START into out[pos..], returns the new output position.
+    // After the rest of the current line, whole lines including their separators go through a single kernel call.
+    private int encodeBlock(final byte[] in, int idx, final int end, final char[] out, int pos) {
+        final Base64Kernel kernel = KernelSelector.forArray(this.tables, end - idx);
+        final int lineWidth = this.lineWidth;
+        final int groupsPerLine = (lineWidth + 3) / 4;
+        int lineIdx = this.lineIdx;
+        if (lineIdx < lineWidth) {
+            int groups = Math.min((lineWidth - lineIdx + 3) / 4, (end - idx) / 3);
+            kernel.encode(in, idx, groups, out, pos);
+            idx += groups * 3;
+            pos += groups * 4;
+            lineIdx += groups * 4;
+        }
+        // the current line is full unless the input is consumed
+        final int lines = (end - idx) / (groupsPerLine * 3);
+        if (lines > 0) {
+            kernel.encodeLines(in, idx, lines, groupsPerLine, this.lineSeparator, out, pos);
+            idx += lines * groupsPerLine * 3;
+            pos += lines * (groupsPerLine * 4 + this.lineSeparator.length);
+            lineIdx = groupsPerLine * 4;
+        }
+        if (end - idx >= 3) {
+            int groups = (end - idx) / 3;
+            pos = separator(out, pos);
+            kernel.encode(in, idx, groups, out, pos);
+            pos += groups * 4;
+            lineIdx = groups * 4;
+        }
+        this.lineIdx = lineIdx;
+        return pos;
+    }
+
+    // Encodes all complete groups starting in STATE_START into out at pos, returns the new output position. Lines
+    // go through the kernel one at a time since buffers have no bulk line loop.
+    private int encodeBlock(final ByteBuffer in, int idx, final int end, final ByteBuffer out, int pos) {
+        final Base64Kernel kernel = KernelSelector.forBuffer(this.tables, in, end - idx);
+        final int lineWidth = this.lineWidth;
+        int lineIdx = this.lineIdx;
+        while (end - idx >= 3) {
+            if (lineIdx >= lineWidth) {
+                pos = Base64Kernel.writeSeparator(this.lineSeparator, out, pos);
+                lineIdx = 0;
+            }
+            int groups = Math.min((lineWidth - lineIdx + 3) / 4, (end - idx) / 3);
+            kernel.encode(in, idx, groups, out, pos);
+            idx += groups * 3;
+            pos += groups * 4;
+            lineIdx += groups * 4;
+        }
+        this.lineIdx = lineIdx;
+        return pos;
     }
 
     public boolean isComplete() {
@@ -131,15 +446,16 @@ public class Base64StreamEncoder {
     }
 
     public String encode(String str) throws IOException {
-        FixedSizeStringBuilder out = new FixedSizeStringBuilder(expectedLength(str.length()));
+        FixedSizeStringBuilder out = new FixedSizeStringBuilder((int)encodedLength(str.length()));
         encode(str, out);
         return out.toString();
     }
 
+    // Encodes into an exactly sized byte[], base64 is pure latin-1 so the String copies it without widening
+    // on jvms with compact strings.
     public String encode(byte[] in) throws IOException {
-        FixedSizeStringBuilder out = new FixedSizeStringBuilder(expectedLength(in.length));
-        encode(in, out);
-        return out.toString();
+        byte[] out = new byte[(int)encodedLength(in.length)];
+        return new String(out, 0, encodeInto(in, 0, in.length, out, 0), StandardCharsets.ISO_8859_1);
     }
 
     public void encode(byte[] in, Appendable out) throws IOException {
@@ -148,14 +464,271 @@ public class Base64StreamEncoder {
     }
 
     public void encode(byte[] in, int offset, int length, Appendable out) throws IOException {
+        reserve(length, out);
         int idx = offset;
-        while (this.state != STATE_EOF && idx < offset + length) {
+        final int end = offset + length;
+        while (this.state != STATE_EOF && this.state != STATE_START && idx < end) {
+            encode(in[idx] & 0xFF, out);
+            idx++;
+        }
+        if (this.state == STATE_START) {
+            idx = encodeBlock(in, null, idx, end, out);
+        }
+        while (this.state != STATE_EOF && idx < end) {
             encode(in[idx] & 0xFF, out);
             idx++;
         }
     }
 
+    public int encode(byte[] in, int offset, int length, byte[] out, int outOffset) {
+        long required = outputLength(length);
+        if (required > out.length - outOffset) {
+            throw new IndexOutOfBoundsException("Capacity (" + (out.length - outOffset) + ") exceeded");
+        }
+        int idx = offset;
+        final int end = offset + length;
+        int pos = outOffset;
+        while (this.state != STATE_EOF && this.state != STATE_START && idx < end) {
+            pos = encode(in[idx] & 0xFF, out, pos);
+            idx++;
+        }
+        if (this.state == STATE_START) {
+            pos = encodeBlock(in, idx, end, out, pos);
+            idx += (end - idx) / 3 * 3;
+        }
+        while (this.state != STATE_EOF && idx < end) {
+            pos = encode(in[idx] & 0xFF, out, pos);
+            idx++;
+        }
+        return pos - outOffset;
+    }
+
+    // like encode(byte[], int, int, byte[], int) into a char[], the caller checks the capacity
+    int encode(byte[] in, int offset, int length, char[] out, int outOffset) {
+        int idx = offset;
+        final int end = offset + length;
+        int pos = outOffset;
+        while (this.state != STATE_EOF && this.state != STATE_START && idx < end) {
+            pos = encode(in[idx] & 0xFF, out, pos);
+            idx++;
+        }
+        if (this.state == STATE_START) {
+            pos = encodeBlock(in, idx, end, out, pos);
+            idx += (end - idx) / 3 * 3;
+        }
+        while (this.state != STATE_EOF && idx < end) {
+            pos = encode(in[idx] & 0xFF, out, pos);
+            idx++;
+        }
+        return pos - outOffset;
+    }
+
+    // Throws BufferOverflowException without writing anything if the result does not fit. Buffers without an
+    // accessible array are written with absolute puts, no temporary array is allocated.
+    public int encode(byte[] in, int offset, int length, ByteBuffer out) {
+        if (outputLength(length) > out.remaining()) {
+            throw new BufferOverflowException();
+        }
+        int len;
+        if (out.hasArray()) {
+            len = encode(in, offset, length, out.array(), out.arrayOffset() + out.position());
+        } else {
+            len = encode(ByteBuffer.wrap(in), offset, offset + length, out, out.position());
+        }
+        out.position(out.position() + len);
+        return len;
+    }
+
+    // Encodes the rest of a stream and finishes it without allocating output, for presized or pooled buffers.
+    // Throws IndexOutOfBoundsException without writing anything if the encodedLength characters do not fit.
+    public int encodeInto(byte[] in, int offset, int length, byte[] out, int outOffset) {
+        if (encodedLength(length) > out.length - outOffset) {
+            throw new IndexOutOfBoundsException("Capacity (" + (out.length - outOffset) + ") exceeded");
+        }
+        int len = encode(in, offset, length, out, outOffset);
+        return len + encodeFinal(out, outOffset + len);
+    }
+
+    public int encodeInto(byte[] in, byte[] out, int outOffset) {
+        return encodeInto(in, 0, in.length, out, outOffset);
+    }
+
+    public int encodeInto(byte[] in, int offset, int length, char[] out, int outOffset) {
+        if (encodedLength(length) > out.length - outOffset) {
+            throw new IndexOutOfBoundsException("Capacity (" + (out.length - outOffset) + ") exceeded");
+        }
+        int pos = outOffset + encode(in, offset, length, out, outOffset);
+        if (this.state != STATE_EOF) {
+            pos = encode(-1, out, pos);
+        }
+        return pos - outOffset;
+    }
+
+    public int encodeInto(byte[] in, char[] out, int outOffset) {
+        return encodeInto(in, 0, in.length, out, outOffset);
+    }
+
+    public int encodeFinal(byte[] out, int outOffset) {
+        if (finalLength() > out.length - outOffset) {
+            throw new IndexOutOfBoundsException("Capacity (" + (out.length - outOffset) + ") exceeded");
+        }
+        return this.state != STATE_EOF ? encode(-1, out, outOffset) - outOffset : 0;
+    }
+
+    public int encodeFinal(ByteBuffer out) {
+        if (finalLength() > out.remaining()) {
+            throw new BufferOverflowException();
+        }
+        int count = this.state != STATE_EOF ? step(-1) : 0;
+        for (int i = 0; i < count; i++) {
+            out.put((byte)this.pending[i]);
+        }
+        return count;
+    }
+
+    // inputs of at least this many bytes are encoded on multiple threads by the encodeParallel methods
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    // an encoder with the same configuration for one segment of a parallel encode, segments are not split again
+    private Base64StreamEncoder fork(int lineIdx) {
+        Base64StreamEncoder encoder = new Base64StreamEncoder(this.tables, this.padding, this.lineWidth, new String(this.lineSeparator));
+        encoder.lineIdx = lineIdx;
+        encoder.parallelThreshold = Integer.MAX_VALUE;
+        return encoder;
+    }
+
+    // The current line is completed on the calling thread, after that every full line starts with a separator
+    // and has the same length, so the full lines are split into segments whose output offsets are known up front.
+    // The remaining partial line goes through the sequential path again. Returns the number of characters.
+    private int encodeParallel(int idx, final int length, int pos, final Block block) {
+        final int end = idx + length;
+        if (length < this.parallelThreshold || this.state != STATE_START) {
+            return block.encode(this, idx, end, pos);
+        }
+        final int outOffset = pos;
+        final int lineWidth = this.lineWidth;
+        int head = this.lineIdx >= lineWidth ? 0 : Math.min((lineWidth - this.lineIdx + 3) / 4, length / 3) * 3;
+        pos += block.encode(this, idx, idx + head, pos);
+        idx += head;
+
+        final int groupsPerLine = (lineWidth + 3) / 4;
+        final int lineBytes = groupsPerLine * 3;
+        final int lineChars = groupsPerLine * 4 + this.lineSeparator.length;
+        final int lines = (end - idx) / lineBytes;
+        if (lines > 0) {
+            final int count = Math.min(lines, ParallelCodec.segments((long)lines * lineBytes, this.parallelThreshold));
+            final int start = idx;
+            final int base = pos;
+            try {
+                ParallelCodec.invoke(count, new ParallelCodec.Segment() {
+                    public void run(int i) {
+                        int first = (int)((long)lines * i / count);
+                        int last = (int)((long)lines * (i + 1) / count);
+                        block.encode(fork(lineWidth), start + first * lineBytes, start + last * lineBytes, base + first * lineChars);
+                    }
+                });
+            } catch (IOException ex) {
+                // segments do not throw checked exceptions
+                throw new IllegalStateException(ex);
+            }
+            idx += lines * lineBytes;
+            pos += lines * lineChars;
+            this.lineIdx = groupsPerLine * 4;
+        }
+        pos += block.encode(this, idx, end, pos);
+        return pos - outOffset;
+    }
+
+    // Like encode(byte[], int, int, byte[], int), large inputs are encoded on the common fork/join pool.
+    public int encodeParallel(final byte[] in, int offset, int length, final byte[] out, int outOffset) {
+        long required = outputLength(length);
+        if (required > out.length - outOffset) {
+            throw new IndexOutOfBoundsException("Capacity (" + (out.length - outOffset) + ") exceeded");
+        }
+        return encodeParallel(offset, length, outOffset, new Block() {
+            int encode(Base64StreamEncoder encoder, int idx, int end, int pos) {
+                return encoder.encode(in, idx, end - idx, out, pos);
+            }
+        });
+    }
+
+    // Encodes in[idx..end) straight into out at pos using absolute indices for both buffers, so mapped and direct
+    // buffers are never copied to the heap. Returns the number of characters, the caller checks the capacity.
+    private int encode(final ByteBuffer in, int idx, final int end, final ByteBuffer out, final int outOffset) {
+        int pos = outOffset;
+        while (this.state != STATE_EOF && this.state != STATE_START && idx < end) {
+            pos = encode(in.get(idx) & 0xFF, out, pos);
+            idx++;
+        }
+        if (this.state == STATE_START) {
+            pos = encodeBlock(in, idx, end, out, pos);
+            idx += (end - idx) / 3 * 3;
+        }
+        while (this.state != STATE_EOF && idx < end) {
+            pos = encode(in.get(idx) & 0xFF, out, pos);
+            idx++;
+        }
+        return pos - outOffset;
+    }
+
+    // Encodes all remaining bytes of in and advances the positions of both buffers, throws
+    // BufferOverflowException without consuming anything if the result does not fit.
+    public int encode(ByteBuffer in, ByteBuffer out) {
+        final int length = in.remaining();
+        if (outputLength(length) > out.remaining()) {
+            throw new BufferOverflowException();
+        }
+        int len;
+        if (in.hasArray()) {
+            len = encode(in.array(), in.arrayOffset() + in.position(), length, out);
+        } else {
+            len = encode(in, in.position(), in.limit(), out, out.position());
+            out.position(out.position() + len);
+        }
+        in.position(in.limit());
+        return len;
+    }
+
+    // Encodes all remaining bytes of in like encode(ByteBuffer, ByteBuffer), large inputs are encoded on
+    // the common fork/join pool. Buffers without an accessible array are encoded in place with absolute indices.
+    public int encodeParallel(final ByteBuffer in, final ByteBuffer out) {
+        final int length = in.remaining();
+        if (outputLength(length) > out.remaining()) {
+            throw new BufferOverflowException();
+        }
+        int len;
+        if (in.hasArray() && out.hasArray()) {
+            len = encodeParallel(in.array(), in.arrayOffset() + in.position(), length, out.array(), out.arrayOffset() + out.position());
+        } else {
+            len = encodeParallel(in.position(), length, out.position(), new Block() {
+                int encode(Base64StreamEncoder encoder, int idx, int end, int pos) {
+                    return encoder.encode(in, idx, end, out, pos);
+                }
+            });
+        }
+        in.position(in.limit());
+        out.position(out.position() + len);
+        return len;
+    }
+
+    // Encodes a complete input like encode(byte[]), large inputs are encoded on the common fork/join pool.
+    public String encodeParallel(byte[] in) {
+        byte[] out = new byte[(int)encodedLength(in.length)];
+        int len = encodeParallel(in, 0, in.length, out, 0);
+        len += encodeFinal(out, len);
+        return new String(out, 0, len, StandardCharsets.ISO_8859_1);
+    }
+
     void encodeByteBuffer(ByteBuffer in, Appendable out) throws IOException {
+        reserve(in.remaining(), out);
+        while (this.state != STATE_EOF && this.state != STATE_START && in.hasRemaining()) {
+            encode(in.get() & 0xFF, out);
+        }
+        if (this.state == STATE_START) {
+            in.position(encodeBlock(null, in, in.position(), in.limit(), out));
+        }
         while (this.state != STATE_EOF && in.hasRemaining()) {
             encode(in.get() & 0xFF, out);
         }
@@ -174,18 +747,129 @@ public class Base64StreamEncoder {
 
     public void encode(File inFile, File outFile) throws IOException {
         int inBufferSize = 24*1024;
-        int outBufferSize = inBufferSize/6*8;
-        InputStream in = new BufferedInputStream(new FileInputStream(inFile), inBufferSize);
+        InputStream in = new FileInputStream(inFile);
         try {
-            BufferedByteAppendable out = new BufferedByteAppendable(new FileOutputStream(outFile), outBufferSize);
+            OutputStream out = new FileOutputStream(outFile);
             try {
-                encode(in, out, inBufferSize);
+                byte[] inBuffer = new byte[inBufferSize];
+                // a read may complete a partial group of the previous one and start a line earlier, so there has to
+                // be room for two more bytes and one more separator than a read from the current state produces
+                byte[] outBuffer = new byte[(int)outputLength(inBufferSize + 2) + this.lineSeparator.length];
+                int len;
+                while (-1 != (len = in.read(inBuffer)) && this.state != STATE_EOF) {
+                    out.write(outBuffer, 0, encode(inBuffer, 0, len, outBuffer, 0));
+                }
+                out.write(outBuffer, 0, encodeFinal(outBuffer, 0));
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    // encodes length bytes of in at position and writes them to out at pos, returns the number of characters
+    private int encodeRegion(FileChannel in, long position, int length, FileChannel out, long pos, boolean last) throws IOException {
+        ByteBuffer src = ByteBuffer.allocate(length);
+        ParallelCodec.read(in, src, position);
+        byte[] encoded = new byte[(int)outputLength(length) + 3];
+        int len = encode(src.array(), 0, length, encoded, 0);
+        if (last) {
+            len += encodeFinal(encoded, len);
+        }
+        ParallelCodec.write(out, ByteBuffer.wrap(encoded, 0, len), pos);
+        return len;
+    }
+
+    // Encodes a complete file like encode(File, File) on the common fork/join pool. After the first line the input
+    // is split into regions of whole lines, each region is mapped and encoded directly into its part of the
+    // pre-sized, mapped output file.
+    public void encodeParallel(File inFile, File outFile) throws IOException {
+        if (inFile.length() < this.parallelThreshold || this.state != STATE_START) {
+            encode(inFile, outFile);
+            return;
+        }
+        FileChannel in = new FileInputStream(inFile).getChannel();
+        try {
+            RandomAccessFile out = new RandomAccessFile(outFile, "rw");
+            try {
+                final FileChannel inChannel = in;
+                final FileChannel outChannel = out.getChannel();
+                final long size = in.size();
+                final int lineWidth = this.lineWidth;
+                final int groupsPerLine = (lineWidth + 3) / 4;
+                final int lineBytes = groupsPerLine * 3;
+                final int lineChars = groupsPerLine * 4 + this.lineSeparator.length;
+                final int head = this.lineIdx >= lineWidth ? 0 : (int)Math.min((lineWidth - this.lineIdx + 3) / 4, size / 3) * 3;
+                final long lines = (size - head) / lineBytes;
+                final int tail = (int)(size - head - lines * lineBytes);
+                out.setLength(outputLength(size) + finalLength(size % 3));
+
+                long pos = encodeRegion(in, 0, head, outChannel, 0, size == head);
+                if (lines > 0) {
+                    final long start = head;
+                    final long base = pos;
+                    final int count = (int)Math.min(lines, ParallelCodec.fileSegments(lines * lineBytes, this.parallelThreshold));
+                    ParallelCodec.invoke(count, new ParallelCodec.Segment() {
+                        public void run(int i) throws IOException {
+                            long first = lines * i / count;
+                            long last = lines * (i + 1) / count;
+                            ByteBuffer src = inChannel.map(FileChannel.MapMode.READ_ONLY, start + first * lineBytes, (last - first) * lineBytes);
+                            ByteBuffer dst = outChannel.map(FileChannel.MapMode.READ_WRITE, base + first * lineChars, (last - first) * lineChars);
+                            try {
+                                fork(lineWidth).encode(src, 0, src.limit(), dst, 0);
+                            } finally {
+                                Mapping.unmap(src);
+                                Mapping.unmap(dst);
+                            }
+                        }
+                    });
+                    pos += lines * lineChars;
+                    this.lineIdx = groupsPerLine * 4;
+                }
+                if (size != head) {
+                    encodeRegion(in, head + lines * lineBytes, tail, outChannel, pos, true);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    // Encodes a complete file like encode(File, File) through a series of mapped windows of both files, so files
+    // of any size can be encoded. Each input window is encoded straight into the output window, the output file is
+    // sized up front from the exact encoded length.
+    public void encodeMapped(File inFile, File outFile) throws IOException {
+        FileChannel in = new FileInputStream(inFile).getChannel();
+        try {
+            RandomAccessFile out = new RandomAccessFile(outFile, "rw");
+            try {
+                final FileChannel outChannel = out.getChannel();
+                final long size = in.size();
+                out.setLength(outputLength(size) + (this.state == STATE_EOF ? 0 : finalLength((this.state + size) % 3)));
+                long pos = 0;
+                for (long position = 0; position < size && this.state != STATE_EOF; position += Mapping.WINDOW) {
+                    int len = (int)Math.min(Mapping.WINDOW, size - position);
+                    long chars = outputLength(len);
+                    MappedByteBuffer src = in.map(FileChannel.MapMode.READ_ONLY, position, len);
+                    MappedByteBuffer dst = outChannel.map(FileChannel.MapMode.READ_WRITE, pos, chars);
+                    try {
+                        encode(src, 0, len, dst, 0);
+                    } finally {
+                        Mapping.unmap(src);
+                        Mapping.unmap(dst);
+                    }
+                    pos += chars;
+                }
+                byte[] tail = new byte[4];
+                ParallelCodec.write(outChannel, ByteBuffer.wrap(tail, 0, encodeFinal(tail, 0)), pos);
             } finally {
                 out.close();
             }
         } finally {
             in.close();
         }
-        
     }
 }
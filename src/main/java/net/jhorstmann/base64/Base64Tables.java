@@ -0,0 +1,99 @@
+package net.jhorstmann.base64;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// lookup tables and bulk kernels for one alphabet, every coder works with exactly one instance
+final class Base64Tables {
+
+    static final Base64Tables STANDARD =
+            new Base64Tables("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/");
+    static final Base64Tables URL_SAFE =
+            new Base64Tables("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_");
+
+    final char[] alphabet;
+
+    // two characters for each 12 bit value, the first one in the high byte
+    final short[] pairs = new short[4096];
+
+    // decoded value of a character already shifted to its position in the group, -1 for invalid characters
+    final int[] codes0 = new int[256];
+    final int[] codes1 = new int[256];
+    final int[] codes2 = new int[256];
+    final int[] codes3 = new int[256];
+
+    final Base64Kernel table;
+    final Base64Kernel wide;
+    final Base64Kernel swar;
+    // null unless the jvm runs the multi-release part for java 17 with jdk.incubator.vector available
+    final Base64Kernel vector;
+
+    private Base64Tables(String alphabet) {
+        this.alphabet = alphabet.toCharArray();
+        for (int i = 0; i < 4096; i++) {
+            pairs[i] = (short)(this.alphabet[i >>> 6] << 8 | this.alphabet[i & 63]);
+        }
+        for (int i = 0; i < 256; i++) {
+            codes0[i] = -1;
+            codes1[i] = -1;
+            codes2[i] = -1;
+            codes3[i] = -1;
+        }
+        for (int i = 0; i < 64; i++) {
+            char ch = this.alphabet[i];
+            codes0[ch] = i << 18;
+            codes1[ch] = i << 12;
+            codes2[ch] = i << 6;
+            codes3[ch] = i;
+        }
+        // the kernels read the tables above, so they are created last
+        this.table = new TableKernel(this);
+        this.wide = new WideKernel(this);
+        this.swar = new SwarKernel(this);
+        this.vector = vectorKernel(this);
+    }
+
+    // The vector kernel only exists in META-INF/versions/17 of the jar and needs --add-modules
+    // jdk.incubator.vector at runtime, everywhere else loading it fails and the scalar kernels are used.
+    private static Base64Kernel vectorKernel(Base64Tables tables) {
+        try {
+            Class<?> kernel = Class.forName("net.jhorstmann.base64.VectorKernel");
+            return (Base64Kernel)kernel.getDeclaredConstructor(Base64Tables.class).newInstance(tables);
+        } catch (Exception ex) {
+            return null;
+        } catch (LinkageError err) {
+            return null;
+        }
+    }
+
+    void encodeGroup(final int bits, final char[] out, final int pos) {
+        final short[] pairs = this.pairs;
+        int hi = pairs[bits >>> 12];
+        int lo = pairs[bits & 0xFFF];
+        out[pos]     = (char)(hi >>> 8);
+        out[pos + 1] = (char)(hi & 0xFF);
+        out[pos + 2] = (char)(lo >>> 8);
+        out[pos + 3] = (char)(lo & 0xFF);
+    }
+
+    void encodeGroup(final int bits, final byte[] out, final int pos) {
+        final short[] pairs = this.pairs;
+        int hi = pairs[bits >>> 12];
+        int lo = pairs[bits & 0xFFF];
+        out[pos]     = (byte)(hi >>> 8);
+        out[pos + 1] = (byte)hi;
+        out[pos + 2] = (byte)(lo >>> 8);
+        out[pos + 3] = (byte)lo;
+    }
+
+    void encodeGroup(final int bits, final ByteBuffer out, final int pos) {
+        final short[] pairs = this.pairs;
+        int chars = pairs[bits >>> 12] << 16 | pairs[bits & 0xFFF];
+        out.putInt(pos, out.order() == ByteOrder.BIG_ENDIAN ? chars : Integer.reverseBytes(chars));
+    }
+
+    // decodes four characters into 24 bits, the result is negative if any of them is not in the alphabet
+    int decodeGroup(final int a, final int b, final int c, final int d) {
+        return codes0[a] | codes1[b] | codes2[c] | codes3[d];
+    }
+}
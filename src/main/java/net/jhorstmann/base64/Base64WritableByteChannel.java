@@ -0,0 +1,105 @@
+package net.jhorstmann.base64;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+
+// Encodes the bytes written to it and writes the characters to another channel. Works with non-blocking channels:
+// a write consumes input only after the previously encoded characters have been written, characters the
+// underlying channel did not accept yet are kept and written by the next write or flush.
+public class Base64WritableByteChannel implements WritableByteChannel {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+
+    private final Base64StreamEncoder encoder;
+    private final WritableByteChannel out;
+    // encoded characters not yet written, in read mode between calls
+    private final ByteBuffer buffer;
+    private boolean open = true;
+
+    public Base64WritableByteChannel(Base64StreamEncoder encoder, WritableByteChannel out, int bufferSize) {
+        // every step has to fit at least one byte, even if it is followed by a line separator
+        if (bufferSize < 64 || bufferSize < encoder.maxCharsPerByte()) {
+            throw new IllegalArgumentException("Buffer size " + bufferSize + " too small");
+        }
+        this.encoder = encoder;
+        this.out = out;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.buffer.flip();
+    }
+
+    public Base64WritableByteChannel(WritableByteChannel out) {
+        this(new Base64StreamEncoder(), out, DEFAULT_BUFFER_SIZE);
+    }
+
+    // writes pending characters, returns false if the underlying channel did not accept all of them
+    public boolean flush() throws IOException {
+        if (!this.open) {
+            throw new ClosedChannelException();
+        }
+        while (this.buffer.hasRemaining()) {
+            if (this.out.write(this.buffer) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int write(ByteBuffer src) throws IOException {
+        int count = 0;
+        while (flush() && src.hasRemaining()) {
+            int len = step(src.remaining());
+            ByteBuffer chunk = src.duplicate();
+            chunk.limit(chunk.position() + len);
+            this.buffer.clear();
+            this.encoder.encode(chunk, this.buffer);
+            this.buffer.flip();
+            src.position(src.position() + len);
+            count += len;
+        }
+        return count;
+    }
+
+    // Largest number of at most max input bytes whose encoding, including line separators, fits into the buffer.
+    // Short lines with long separators can produce far more than 4/3 characters per byte.
+    private int step(int max) {
+        final int capacity = this.buffer.capacity();
+        int low = 1;
+        int high = Math.min(max, capacity);
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (this.encoder.outputLength(mid) <= capacity) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    public boolean isOpen() {
+        return this.open;
+    }
+
+    // Writes the padding and all pending characters and closes the underlying channel. With a non-blocking
+    // channel this spins until everything is written.
+    public void close() throws IOException {
+        if (this.open) {
+            try {
+                while (!flush()) {
+                    Thread.yield();
+                }
+                this.buffer.clear();
+                this.encoder.encodeFinal(this.buffer);
+                this.buffer.flip();
+                while (!flush()) {
+                    Thread.yield();
+                }
+            } finally {
+                this.open = false;
+                this.out.close();
+            }
+        }
+    }
+}
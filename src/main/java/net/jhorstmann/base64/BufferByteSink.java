@@ -0,0 +1,20 @@
+package net.jhorstmann.base64;
+
+import java.nio.ByteBuffer;
+
+final class BufferByteSink implements ByteSink {
+
+    private final ByteBuffer buffer;
+
+    BufferByteSink(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public int remaining() {
+        return buffer.remaining();
+    }
+
+    public void write(byte[] b, int off, int len) {
+        buffer.put(b, off, len);
+    }
+}
@@ -0,0 +1,12 @@
+package net.jhorstmann.base64;
+
+import java.io.IOException;
+
+// unsynchronized bulk output of the decoders
+interface ByteSink {
+
+    // maximum number of bytes that may be written
+    int remaining();
+
+    void write(byte[] b, int off, int len) throws IOException;
+}
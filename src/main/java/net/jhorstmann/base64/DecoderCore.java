@@ -0,0 +1,686 @@
+package net.jhorstmann.base64;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// decode state machine and bulk loops shared by Base64StreamDecoder and Base64NIODecoder,
+// the decoders only differ in how the byte[] output is handed on to their targets
+final class DecoderCore {
+
+    private static final int STATE_EOF = -1;
+    private static final int STATE_START = 0;
+    private static final int STATE_SECOND = 1;
+    private static final int STATE_THIRD = 2;
+    private static final int STATE_PADDING = 3;
+    private static final int STATE_FOURTH = 4;
+    private static final int CHUNK_SIZE = 3 * 1024;
+    private static final int STRING_CHUNK_SIZE = 1024;
+    private final Base64Tables tables;
+    // without required padding every byte is written as soon as its last bit is known, so a stream may end
+    // after the second or third character of a group
+    private final boolean paddingRequired;
+    private int state = 0;
+    private int buf = 0;
+    private int position;
+    private byte[] chunk;
+    // characters of a String copied for one bulk decode step
+    private char[] chars;
+
+    DecoderCore(Base64Tables tables, boolean paddingRequired) {
+        this.tables = tables;
+        this.paddingRequired = paddingRequired;
+    }
+
+    boolean isPaddingRequired() {
+        return this.paddingRequired;
+    }
+
+    // a new core with the same configuration
+    DecoderCore fork() {
+        return new DecoderCore(this.tables, this.paddingRequired);
+    }
+
+    // takes over the state of a fork, after a parallel decode the fork of the last segment holds that of the stream
+    void join(DecoderCore fork) {
+        this.state = fork.state;
+        this.buf = fork.buf;
+    }
+
+    void reset() {
+        this.state = 0;
+        this.buf = 0;
+    }
+
+    static boolean isSpace(int ch) {
+        return ch == '\r' || ch == '\n' || ch == '\t' || ch == '\f' || ch == ' ';
+    }
+
+    private int decodeChar(int ch) throws IOException {
+        if (ch < 0 || ch >= 256) {
+            throw new InvalidCharacterException(ch);
+        } else {
+            int val = this.tables.codes3[ch];
+            if (val >= 0) {
+                return val;
+            } else {
+                throw new InvalidCharacterException(ch);
+            }
+        }
+    }
+
+    // runs a single character through the state machine and writes the decoded bytes to out[pos..limit),
+    // returns the new output position or -1 without consuming the character if the bytes do not fit
+    int decode(final int ch, final byte[] out, final int pos, final int limit) throws IOException {
+        return this.paddingRequired ? decodePadded(ch, out, pos, limit) : decodeUnpadded(ch, out, pos, limit);
+    }
+
+    private int decodePadded(final int ch, final byte[] out, final int pos, final int limit) throws IOException {
+        switch (this.state) {
+            case STATE_EOF:
+                break;
+            case STATE_START:
+                if (ch == -1) {
+                    this.state = STATE_EOF;
+                } else if (ch == '=') {
+                    throw new InvalidCharacterException(ch);
+                } else if (!isSpace(ch)) {
+                    this.buf = decodeChar(ch);
+                    this.state = STATE_SECOND;
+                }
+                break;
+            case STATE_SECOND:
+                if (ch == -1) {
+                    throw new IncompleteStreamException(ch);
+                } else if (ch == '=') {
+                    throw new InvalidCharacterException(ch);
+                } else {
+                    int val = decodeChar(ch);
+                    this.buf = (this.buf << 6) | val;
+                    this.state = STATE_THIRD;
+                }
+                break;
+            case STATE_THIRD:
+                if (ch == -1) {
+                    throw new IncompleteStreamException(ch);
+                } else if (ch == '=') {
+                    this.state = STATE_PADDING;
+                } else {
+                    int val = decodeChar(ch);
+                    this.buf = (this.buf << 6) | val;
+                    this.state = STATE_FOURTH;
+                }
+                break;
+            case STATE_PADDING:
+                if (ch == -1) {
+                    throw new IncompleteStreamException(ch);
+                } else if (ch == '=') {
+                    if (limit - pos < 1) {
+                        return -1;
+                    }
+                    out[pos] = (byte)(this.buf >> 4);
+                    this.state = STATE_START;
+                    return pos + 1;
+                } else {
+                    throw new InvalidCharacterException(ch);
+                }
+            case STATE_FOURTH:
+                if (ch == -1) {
+                    throw new IncompleteStreamException(ch);
+                } else if (ch == '=') {
+                    if (limit - pos < 2) {
+                        return -1;
+                    }
+                    int tmp = this.buf;
+                    out[pos]     = (byte)(tmp >> 10);
+                    out[pos + 1] = (byte)(tmp >> 2);
+                    this.state = STATE_START;
+                    return pos + 2;
+                } else {
+                    int val = decodeChar(ch);
+                    if (limit - pos < 3) {
+                        return -1;
+                    }
+                    Base64Kernel.writeGroup(out, pos, (this.buf << 6) | val);
+                    this.state = STATE_START;
+                    return pos + 3;
+                }
+            default:
+                throw new IllegalStateException("Invalid State " + this.state);
+        }
+        return pos;
+    }
+
+    private int decodeUnpadded(final int ch, final byte[] out, final int pos, final int limit) throws IOException {
+        switch (this.state) {
+            case STATE_EOF:
+                break;
+            case STATE_START:
+                if (ch == -1) {
+                    this.state = STATE_EOF;
+                } else if (ch == '=') {
+                    throw new InvalidCharacterException(ch);
+                } else if (!isSpace(ch)) {
+                    this.buf = decodeChar(ch);
+                    this.state = STATE_SECOND;
+                }
+                break;
+            case STATE_SECOND:
+                if (ch == -1) {
+                    throw new IncompleteStreamException(ch);
+                } else if (ch == '=') {
+                    throw new InvalidCharacterException(ch);
+                } else {
+                    int val = decodeChar(ch);
+                    if (limit - pos < 1) {
+                        return -1;
+                    }
+                    this.buf = (this.buf << 6) | val;
+                    out[pos] = (byte)(this.buf >> 4);
+                    this.state = STATE_THIRD;
+                    return pos + 1;
+                }
+            case STATE_THIRD:
+                if (ch == -1) {
+                    this.state = STATE_EOF;
+                } else if (ch == '=') {
+                    this.state = STATE_PADDING;
+                } else {
+                    int val = decodeChar(ch);
+                    if (limit - pos < 1) {
+                        return -1;
+                    }
+                    this.buf = (this.buf << 6) | val;
+                    out[pos] = (byte)(this.buf >> 2);
+                    this.state = STATE_FOURTH;
+                    return pos + 1;
+                }
+                break;
+            case STATE_PADDING:
+                if (ch == -1) {
+                    this.state = STATE_EOF;
+                } else if (ch == '=') {
+                    this.state = STATE_START;
+                } else {
+                    throw new InvalidCharacterException(ch);
+                }
+                break;
+            case STATE_FOURTH:
+                if (ch == -1) {
+                    this.state = STATE_EOF;
+                } else if (ch == '=') {
+                    this.state = STATE_START;
+                } else {
+                    int val = decodeChar(ch);
+                    if (limit - pos < 1) {
+                        return -1;
+                    }
+                    out[pos] = (byte)(this.buf << 6 | val);
+                    this.state = STATE_START;
+                    return pos + 1;
+                }
+                break;
+            default:
+                throw new IllegalStateException("Invalid State " + this.state);
+        }
+        return pos;
+    }
+
+    boolean isEOF() {
+        return this.state == STATE_EOF;
+    }
+
+    // true between groups of an unfinished stream
+    boolean isGroupStart() {
+        return this.state == STATE_START;
+    }
+
+    boolean isComplete() {
+        return this.state == STATE_START || this.state == STATE_EOF || (!this.paddingRequired && this.state != STATE_SECOND);
+    }
+
+    void checkComplete() throws IOException {
+        if (!isComplete()) {
+            throw new IncompleteStreamException("Incomplete Base64 Stream");
+        }
+    }
+
+    // characters of the current group that were already consumed
+    private int seen() {
+        switch (this.state) {
+            case STATE_SECOND:
+                return 1;
+            case STATE_THIRD:
+            case STATE_PADDING:
+                return 2;
+            case STATE_FOURTH:
+                return 3;
+            default:
+                return 0;
+        }
+    }
+
+    // bytes of the current group that were already written, only without required padding
+    private int written() {
+        return this.paddingRequired ? 0 : Math.max(0, seen() - 1);
+    }
+
+    // Number of bytes that chars more alphabet characters produce until the stream is complete, including the
+    // bytes of the current group that are not written yet. Exact for valid input unless padding ends a group
+    // in the middle of it, so it bounds the output of the one-shot decode methods.
+    long decodedLength(long chars) {
+        if (this.state == STATE_EOF) {
+            return 0;
+        }
+        if (this.state == STATE_PADDING) {
+            return 1 - written() + chars * 3 / 4;
+        }
+        return (seen() + chars) * 3 / 4 - written();
+    }
+
+    // The exact number of bytes that decoding in[idx..end) and completing the stream produces. Each run of
+    // characters up to the next padding decodes on its own, whitespace and padding produce nothing. Valid input
+    // is assumed, the characters are not looked up in the alphabet.
+
+    long decodedLength(final byte[] in, final int idx, final int end) {
+        return this.state == STATE_EOF ? 0 : decodedLength(in, idx, end, seen(), written());
+    }
+
+    long decodedLength(final char[] in, final int idx, final int end) {
+        return this.state == STATE_EOF ? 0 : decodedLength(in, idx, end, seen(), written());
+    }
+
+    long decodedLength(final CharSequence in, final int idx, final int end) {
+        return this.state == STATE_EOF ? 0 : decodedLength(in, idx, end, seen(), written());
+    }
+
+    // the same for a group that already has seen characters of which written bytes were output
+    static long decodedLength(final byte[] in, int idx, final int end, final int seen, final int written) {
+        long bytes = -written;
+        long run = seen;
+        for (; idx < end; idx++) {
+            int ch = in[idx];
+            if (ch == '=') {
+                bytes += run * 3 / 4;
+                run = 0;
+            } else if (!isSpace(ch)) {
+                run++;
+            }
+        }
+        return bytes + run * 3 / 4;
+    }
+
+    static long decodedLength(final char[] in, int idx, final int end, final int seen, final int written) {
+        long bytes = -written;
+        long run = seen;
+        for (; idx < end; idx++) {
+            char ch = in[idx];
+            if (ch == '=') {
+                bytes += run * 3 / 4;
+                run = 0;
+            } else if (!isSpace(ch)) {
+                run++;
+            }
+        }
+        return bytes + run * 3 / 4;
+    }
+
+    static long decodedLength(final CharSequence in, int idx, final int end, final int seen, final int written) {
+        long bytes = -written;
+        long run = seen;
+        for (; idx < end; idx++) {
+            char ch = in.charAt(idx);
+            if (ch == '=') {
+                bytes += run * 3 / 4;
+                run = 0;
+            } else if (!isSpace(ch)) {
+                run++;
+            }
+        }
+        return bytes + run * 3 / 4;
+    }
+
+    // Number of bytes that decoding in[idx..end) produces without any further input. Unlike decodedLength a group
+    // cut off at end only counts with its eagerly written bytes, which requires padding not to be required.
+    long bufferedLength(final byte[] in, int idx, final int end) {
+        if (this.state == STATE_EOF) {
+            return 0;
+        } else if (!this.paddingRequired) {
+            return decodedLength(in, idx, end, seen(), written());
+        }
+        long bytes = 0;
+        long run = this.state == STATE_PADDING ? 0 : seen();
+        boolean half = this.state == STATE_PADDING;
+        for (; idx < end; idx++) {
+            int ch = in[idx];
+            if (ch == '=') {
+                // a group of two characters is only written at its second padding character
+                if (half) {
+                    bytes++;
+                    half = false;
+                } else if (run % 4 == 2) {
+                    bytes += run / 4 * 3;
+                    run = 0;
+                    half = true;
+                } else {
+                    bytes += run * 3 / 4;
+                    run = 0;
+                }
+            } else if (!isSpace(ch)) {
+                run++;
+            }
+        }
+        return bytes + run / 4 * 3;
+    }
+
+    long bufferedLength(final char[] in, int idx, final int end) {
+        if (this.state == STATE_EOF) {
+            return 0;
+        } else if (!this.paddingRequired) {
+            return decodedLength(in, idx, end, seen(), written());
+        }
+        long bytes = 0;
+        long run = this.state == STATE_PADDING ? 0 : seen();
+        boolean half = this.state == STATE_PADDING;
+        for (; idx < end; idx++) {
+            char ch = in[idx];
+            if (ch == '=') {
+                if (half) {
+                    bytes++;
+                    half = false;
+                } else if (run % 4 == 2) {
+                    bytes += run / 4 * 3;
+                    run = 0;
+                    half = true;
+                } else {
+                    bytes += run * 3 / 4;
+                    run = 0;
+                }
+            } else if (!isSpace(ch)) {
+                run++;
+            }
+        }
+        return bytes + run / 4 * 3;
+    }
+
+    // Number of padding characters at the end of in[idx..end), ignoring trailing whitespace. Subtracting them
+    // from the length gives a bound on the data characters that is exact for input without line breaks.
+    static int trailingPadding(final byte[] in, final int idx, int end) {
+        int count = 0;
+        while (end > idx && count < 2) {
+            int ch = in[--end];
+            if (ch == '=') {
+                count++;
+            } else if (!isSpace(ch)) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    static int trailingPadding(final char[] in, final int idx, int end) {
+        int count = 0;
+        while (end > idx && count < 2) {
+            char ch = in[--end];
+            if (ch == '=') {
+                count++;
+            } else if (!isSpace(ch)) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    static int trailingPadding(final CharSequence in, final int idx, int end) {
+        int count = 0;
+        while (end > idx && count < 2) {
+            char ch = in.charAt(--end);
+            if (ch == '=') {
+                count++;
+            } else if (!isSpace(ch)) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    static int trailingPadding(final ByteBuffer in, final int idx, int end) {
+        int count = 0;
+        while (end > idx && count < 2) {
+            int ch = in.get(--end);
+            if (ch == '=') {
+                count++;
+            } else if (!isSpace(ch)) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    byte[] chunk() {
+        byte[] chunk = this.chunk;
+        if (chunk == null) {
+            chunk = this.chunk = new byte[CHUNK_SIZE];
+        }
+        return chunk;
+    }
+
+    // a buffer for the characters of a String of the given length, short strings get one of their size
+    private char[] chars(int length) {
+        char[] chars = this.chars;
+        if (chars == null || (chars.length < length && chars.length < STRING_CHUNK_SIZE)) {
+            chars = this.chars = new char[Math.min(length, STRING_CHUNK_SIZE)];
+        }
+        return chars;
+    }
+
+    // output position after the last call to one of the bulk decode methods into a byte[]
+    int position() {
+        return this.position;
+    }
+
+    // The bulk methods decode in[idx..end) into out[pos..limit) until the input is consumed, the end of the
+    // stream is reached or the next character would not fit. They return the index of the first unconsumed
+    // character, the new output position is available from position(). Complete groups go through a kernel,
+    // the state machine only handles whitespace, padding and partial groups.
+
+    int decode(final byte[] in, int idx, final int end, final byte[] out, int pos, final int limit) throws IOException {
+        final Base64Kernel kernel = KernelSelector.forArray(this.tables, end - idx);
+        while (idx < end && this.state != STATE_EOF) {
+            if (this.state == STATE_START) {
+                int groups = Math.min((end - idx) / 4, (limit - pos) / 3);
+                int count = kernel.decode(in, idx, groups, out, pos);
+                idx += count * 4;
+                pos += count * 3;
+                if (count > 0 && count == groups) {
+                    continue;
+                }
+                if (idx == end) {
+                    break;
+                }
+            }
+            int next = decode(in[idx] & 0xFF, out, pos, limit);
+            if (next < 0) {
+                break;
+            }
+            pos = next;
+            idx++;
+        }
+        this.position = pos;
+        return idx;
+    }
+
+    int decode(final char[] in, int idx, final int end, final byte[] out, int pos, final int limit) throws IOException {
+        final Base64Kernel kernel = KernelSelector.forChars(this.tables, end - idx);
+        while (idx < end && this.state != STATE_EOF) {
+            if (this.state == STATE_START) {
+                int groups = Math.min((end - idx) / 4, (limit - pos) / 3);
+                int count = kernel.decode(in, idx, groups, out, pos);
+                idx += count * 4;
+                pos += count * 3;
+                if (count > 0 && count == groups) {
+                    continue;
+                }
+                if (idx == end) {
+                    break;
+                }
+            }
+            int next = decode(in[idx], out, pos, limit);
+            if (next < 0) {
+                break;
+            }
+            pos = next;
+            idx++;
+        }
+        this.position = pos;
+        return idx;
+    }
+
+    int decode(final CharSequence in, int idx, final int end, final byte[] out, int pos, final int limit) throws IOException {
+        final Base64Kernel kernel = KernelSelector.forChars(this.tables, end - idx);
+        while (idx < end && this.state != STATE_EOF) {
+            if (this.state == STATE_START) {
+                int groups = Math.min((end - idx) / 4, (limit - pos) / 3);
+                int count = kernel.decode(in, idx, groups, out, pos);
+                idx += count * 4;
+                pos += count * 3;
+                if (count > 0 && count == groups) {
+                    continue;
+                }
+                if (idx == end) {
+                    break;
+                }
+            }
+            int next = decode(in.charAt(idx), out, pos, limit);
+            if (next < 0) {
+                break;
+            }
+            pos = next;
+            idx++;
+        }
+        this.position = pos;
+        return idx;
+    }
+
+    // Strings are copied in chunks and decoded by the char[] kernels, a bulk getChars is much cheaper than a
+    // charAt call per character and only widens the latin-1 bytes of a compact string
+    int decode(final String in, int idx, final int end, final byte[] out, int pos, final int limit) throws IOException {
+        final char[] chars = chars(end - idx);
+        while (idx < end && this.state != STATE_EOF) {
+            int len = Math.min(end - idx, chars.length);
+            in.getChars(idx, idx + len, chars, 0);
+            int next = decode(chars, 0, len, out, pos, limit);
+            pos = this.position;
+            idx += next;
+            if (next < len) {
+                break;
+            }
+        }
+        this.position = pos;
+        return idx;
+    }
+
+    // uses absolute indices into the buffer and does not change its position
+    int decode(final ByteBuffer in, int idx, final int end, final byte[] out, int pos, final int limit) throws IOException {
+        final Base64Kernel kernel = KernelSelector.forBuffer(this.tables, in, end - idx);
+        while (idx < end && this.state != STATE_EOF) {
+            if (this.state == STATE_START) {
+                int groups = Math.min((end - idx) / 4, (limit - pos) / 3);
+                int count = kernel.decode(in, idx, groups, out, pos);
+                idx += count * 4;
+                pos += count * 3;
+                if (count > 0 && count == groups) {
+                    continue;
+                }
+                if (idx == end) {
+                    break;
+                }
+            }
+            int next = decode(in.get(idx) & 0xFF, out, pos, limit);
+            if (next < 0) {
+                break;
+            }
+            pos = next;
+            idx++;
+        }
+        this.position = pos;
+        return idx;
+    }
+
+    // The sink variants decode through the chunk and hand each filled part to the sink. They stop when the input
+    // is consumed, the end of the stream is reached or the sink has no room left for the next decoded bytes.
+
+    int decode(final byte[] in, int idx, final int end, final ByteSink out) throws IOException {
+        final byte[] chunk = chunk();
+        while (idx < end && this.state != STATE_EOF) {
+            int next = decode(in, idx, end, chunk, 0, Math.min(chunk.length, out.remaining()));
+            if (this.position > 0) {
+                out.write(chunk, 0, this.position);
+            }
+            if (next == idx) {
+                break;
+            }
+            idx = next;
+        }
+        return idx;
+    }
+
+    int decode(final char[] in, int idx, final int end, final ByteSink out) throws IOException {
+        final byte[] chunk = chunk();
+        while (idx < end && this.state != STATE_EOF) {
+            int next = decode(in, idx, end, chunk, 0, Math.min(chunk.length, out.remaining()));
+            if (this.position > 0) {
+                out.write(chunk, 0, this.position);
+            }
+            if (next == idx) {
+                break;
+            }
+            idx = next;
+        }
+        return idx;
+    }
+
+    int decode(final CharSequence in, int idx, final int end, final ByteSink out) throws IOException {
+        final byte[] chunk = chunk();
+        while (idx < end && this.state != STATE_EOF) {
+            int next = decode(in, idx, end, chunk, 0, Math.min(chunk.length, out.remaining()));
+            if (this.position > 0) {
+                out.write(chunk, 0, this.position);
+            }
+            if (next == idx) {
+                break;
+            }
+            idx = next;
+        }
+        return idx;
+    }
+
+    int decode(final String in, int idx, final int end, final ByteSink out) throws IOException {
+        final byte[] chunk = chunk();
+        while (idx < end && this.state != STATE_EOF) {
+            int next = decode(in, idx, end, chunk, 0, Math.min(chunk.length, out.remaining()));
+            if (this.position > 0) {
+                out.write(chunk, 0, this.position);
+            }
+            if (next == idx) {
+                break;
+            }
+            idx = next;
+        }
+        return idx;
+    }
+
+    int decode(final ByteBuffer in, int idx, final int end, final ByteSink out) throws IOException {
+        final byte[] chunk = chunk();
+        while (idx < end && this.state != STATE_EOF) {
+            int next = decode(in, idx, end, chunk, 0, Math.min(chunk.length, out.remaining()));
+            if (this.position > 0) {
+                out.write(chunk, 0, this.position);
+            }
+            if (next == idx) {
+                break;
+            }
+            idx = next;
+        }
+        return idx;
+    }
+}
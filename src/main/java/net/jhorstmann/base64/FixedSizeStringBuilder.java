@@ -37,6 +37,14 @@ final class FixedSizeStringBuilder implements Appendable {
         return this;
     }
 
+    void append(char[] chars, int offset, int length) {
+        if (length > array.length - index) {
+            throw new IllegalStateException("Capacity (" + array.length + ") exceeded");
+        }
+        System.arraycopy(chars, offset, array, index, length);
+        index += length;
+    }
+
     @Override
     public String toString() {
         return new String(array, 0, index);
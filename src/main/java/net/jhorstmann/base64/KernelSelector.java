@@ -0,0 +1,159 @@
+package net.jhorstmann.base64;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+// picks the kernel of an alphabet for a single call, based on input size, input type and the running jvm
+final class KernelSelector {
+
+    static final String KERNEL_PROPERTY = "net.jhorstmann.base64.kernel";
+    static final String AUTOTUNE_PROPERTY = "net.jhorstmann.base64.autotune";
+
+    // kernels of the standard alphabet, a forced kernel and the calibration refer to these
+    static final Base64Kernel TABLE = Base64Tables.STANDARD.table;
+    static final Base64Kernel WIDE = Base64Tables.STANDARD.wide;
+    static final Base64Kernel SWAR = Base64Tables.STANDARD.swar;
+    // null without the java 17 part of the multi-release jar and the jdk.incubator.vector module
+    static final Base64Kernel VECTOR = Base64Tables.STANDARD.vector;
+
+    // heap ByteBuffer views only compile to single word accesses starting with java 9
+    static final boolean HEAP_WORD_ACCESS = !System.getProperty("java.specification.version", "1.").startsWith("1.");
+
+    private static final int DEFAULT_SMALL_THRESHOLD = 64;
+    private static final int DEFAULT_LARGE_THRESHOLD = 1024;
+
+    private static final Base64Kernel forced;
+    // inputs shorter than smallThreshold use the table kernel, arrays of at least largeThreshold the vector or
+    // swar kernel
+    private static final int smallThreshold;
+    private static final int largeThreshold;
+
+    static {
+        forced = forName(System.getProperty(KERNEL_PROPERTY));
+        if (forced == null && Boolean.getBoolean(AUTOTUNE_PROPERTY)) {
+            int[] thresholds = calibrate();
+            smallThreshold = thresholds[0];
+            largeThreshold = thresholds[1];
+        } else {
+            smallThreshold = DEFAULT_SMALL_THRESHOLD;
+            largeThreshold = DEFAULT_LARGE_THRESHOLD;
+        }
+    }
+
+    private KernelSelector() {
+    }
+
+    static Base64Kernel forName(String name) {
+        if (name == null) {
+            return null;
+        } else if (TABLE.name().equalsIgnoreCase(name)) {
+            return TABLE;
+        } else if (WIDE.name().equalsIgnoreCase(name)) {
+            return WIDE;
+        } else if (SWAR.name().equalsIgnoreCase(name)) {
+            return SWAR;
+        } else if ("vector".equalsIgnoreCase(name)) {
+            if (VECTOR == null) {
+                throw new IllegalArgumentException("Kernel vector needs java 17 and the jdk.incubator.vector module");
+            }
+            return VECTOR;
+        } else {
+            throw new IllegalArgumentException("Unknown kernel " + name);
+        }
+    }
+
+    // the kernel of tables of the same kind as the forced one
+    private static Base64Kernel forced(Base64Tables tables) {
+        return forced == TABLE ? tables.table : forced == WIDE ? tables.wide : forced == SWAR ? tables.swar : tables.vector;
+    }
+
+    static Base64Kernel forArray(Base64Tables tables, int length) {
+        if (forced != null) {
+            return forced(tables);
+        } else if (length < smallThreshold) {
+            return tables.table;
+        } else if (length >= largeThreshold && tables.vector != null) {
+            return tables.vector;
+        } else if (length >= largeThreshold && HEAP_WORD_ACCESS) {
+            return tables.swar;
+        } else {
+            return tables.wide;
+        }
+    }
+
+    static Base64Kernel forChars(Base64Tables tables, int length) {
+        if (forced != null) {
+            return forced(tables);
+        } else if (length < smallThreshold) {
+            return tables.table;
+        } else {
+            return tables.wide;
+        }
+    }
+
+    static Base64Kernel forBuffer(Base64Tables tables, ByteBuffer in, int length) {
+        if (forced != null) {
+            return forced(tables);
+        } else if (length < smallThreshold) {
+            return tables.table;
+        } else if (in.isDirect() || HEAP_WORD_ACCESS) {
+            return tables.swar;
+        } else {
+            return tables.table;
+        }
+    }
+
+    // quick self benchmark of the decode and encode loops for increasing input sizes
+    private static int[] calibrate() {
+        int maxLength = 16 * 1024;
+        byte[] data = new byte[maxLength / 4 * 3];
+        new Random(0).nextBytes(data);
+        byte[] in = new byte[maxLength];
+        char[] tmp = new char[maxLength];
+        TABLE.encode(data, 0, data.length / 3, tmp, 0);
+        for (int i = 0; i < maxLength; i++) {
+            in[i] = (byte)tmp[i];
+        }
+        byte[] out = new byte[data.length];
+        byte[] encoded = new byte[maxLength];
+
+        int small = -1;
+        int large = -1;
+        for (int length = 16; length <= maxLength; length *= 2) {
+            long table = time(TABLE, in, length, out, data, encoded);
+            long wide = time(WIDE, in, length, out, data, encoded);
+            // arrays of at least the large threshold use the vector kernel where available
+            long fast = VECTOR != null ? time(VECTOR, in, length, out, data, encoded)
+                    : HEAP_WORD_ACCESS ? time(SWAR, in, length, out, data, encoded) : Long.MAX_VALUE;
+            if (small < 0 && Math.min(wide, fast) < table) {
+                small = length;
+            }
+            if (large < 0 && fast < wide) {
+                large = length;
+            }
+        }
+        if (small < 0) {
+            small = Integer.MAX_VALUE;
+        }
+        if (large < 0) {
+            large = Integer.MAX_VALUE;
+        }
+        return new int[]{small, Math.max(small, large)};
+    }
+
+    // decodes length characters of in and encodes the same number of groups of data
+    private static long time(Base64Kernel kernel, byte[] in, int length, byte[] out, byte[] data, byte[] encoded) {
+        int groups = length / 4;
+        int iterations = (1 << 19) / length;
+        for (int i = 0; i < iterations; i++) {
+            kernel.decode(in, 0, groups, out, 0);
+            kernel.encode(data, 0, groups, encoded, 0);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            kernel.decode(in, 0, groups, out, 0);
+            kernel.encode(data, 0, groups, encoded, 0);
+        }
+        return System.nanoTime() - start;
+    }
+}
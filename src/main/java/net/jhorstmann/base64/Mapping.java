@@ -0,0 +1,61 @@
+package net.jhorstmann.base64;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+// Files of any size are walked through a series of mapped windows. Each window is released as soon as it is done
+// instead of waiting for the garbage collector, which would otherwise keep gigabytes of address space and page
+// cache pinned. Java has no madvise, the windows are mapped and touched in order so that the sequential read-ahead
+// of the operating system applies.
+final class Mapping {
+
+    // a multiple of 3 and 4, so only the last window of a file ends with a partial group
+    static final long WINDOW = 48L * 1024 * 1024;
+
+    private static final Object unsafe;
+    private static final Method invokeCleaner;
+
+    static {
+        Object theUnsafe = null;
+        Method method = null;
+        try {
+            // java 9 and later
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            method = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            theUnsafe = field.get(null);
+        } catch (Exception ex) {
+            method = null;
+        }
+        unsafe = theUnsafe;
+        invokeCleaner = method;
+    }
+
+    private Mapping() {
+    }
+
+    // Unmaps a buffer returned by FileChannel.map, it must not be accessed afterwards. Does nothing if the jvm does not
+    // allow it, the mapping is then released by the garbage collector.
+    static void unmap(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) {
+            return;
+        }
+        try {
+            if (invokeCleaner != null) {
+                invokeCleaner.invoke(unsafe, buffer);
+            } else {
+                // java 8
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        } catch (Exception ex) {
+            // left to the garbage collector
+        }
+    }
+}
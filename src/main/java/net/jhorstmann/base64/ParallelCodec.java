@@ -0,0 +1,313 @@
+package net.jhorstmann.base64;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+// fork/join support for the parallel methods: the input is split into segments that are processed independently
+// on the common pool and written at precomputed offsets of a single pre-sized output
+final class ParallelCodec {
+
+    static final String THRESHOLD_PROPERTY = "net.jhorstmann.base64.parallel.threshold";
+    private static final int DEFAULT_THRESHOLD = 1024 * 1024;
+
+    // inputs shorter than this stay on the calling thread
+    static final int THRESHOLD = Integer.getInteger(THRESHOLD_PROPERTY, DEFAULT_THRESHOLD);
+
+    // upper bound for the input of one segment of a file, so that its input and output each fit into one mapping
+    static final long MAX_REGION = 1L << 30;
+
+    interface Segment {
+        void run(int index) throws IOException;
+    }
+
+    private static final class Task extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Segment segment;
+        private final int index;
+        private IOException failure;
+
+        Task(Segment segment, int index) {
+            this.segment = segment;
+            this.index = index;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                this.segment.run(this.index);
+            } catch (IOException ex) {
+                this.failure = ex;
+            }
+        }
+    }
+
+    private ParallelCodec() {
+    }
+
+    // number of segments for length units of input, each segment gets at least a quarter of the threshold
+    static int segments(long length, int threshold) {
+        if (length <= 0 || length < threshold) {
+            return 1;
+        }
+        long minLength = Math.max(1, threshold / 4);
+        long maxCount = ForkJoinPool.getCommonPoolParallelism() * 4L;
+        return (int)Math.max(1, Math.min(maxCount, length / minLength));
+    }
+
+    // number of segments for a file of the given length
+    static int fileSegments(long length, int threshold) {
+        return (int)Math.max(segments(length, threshold), (length + MAX_REGION - 1) / MAX_REGION);
+    }
+
+    static void read(final FileChannel in, final ByteBuffer dst, long position) throws IOException {
+        while (dst.hasRemaining()) {
+            int len = in.read(dst, position);
+            if (len < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            position += len;
+        }
+    }
+
+    static void write(final FileChannel out, final ByteBuffer src, long position) throws IOException {
+        while (src.hasRemaining()) {
+            position += out.write(src, position);
+        }
+    }
+
+    // runs all segments and rethrows the exception of the first failed one
+    static void invoke(final int count, final Segment segment) throws IOException {
+        if (count == 1) {
+            segment.run(0);
+            return;
+        }
+        Task[] tasks = new Task[count];
+        for (int i = 0; i < count; i++) {
+            tasks[i] = new Task(segment, i);
+        }
+        ForkJoinTask.invokeAll(tasks);
+        for (Task task : tasks) {
+            if (task.failure != null) {
+                throw task.failure;
+            }
+        }
+    }
+
+    // data characters and padding of one segment of the input
+    static final class Counts {
+        long data;
+        int pads;
+        long firstPad = Long.MAX_VALUE;
+        long lastData = -1;
+
+        void add(final int ch, final long idx) {
+            if (ch == '=') {
+                if (this.pads++ == 0) {
+                    this.firstPad = idx;
+                }
+            } else if (!DecoderCore.isSpace(ch)) {
+                this.data++;
+                this.lastData = idx;
+            }
+        }
+    }
+
+    // input and output of a parallel decode, all indices are absolute positions in the input
+    abstract static class Decoding {
+
+        abstract int get(long idx) throws IOException;
+
+        abstract void scan(long from, long to, Counts counts) throws IOException;
+
+        // creates the output, called once the decoded length is known
+        abstract void allocate(long length) throws IOException;
+
+        // decodes in[from..to) with core into the output at pos, returns the index of the first unconsumed char
+        abstract long decode(DecoderCore core, long from, long to, long pos, long length) throws IOException;
+    }
+
+    // decodes a byte[] or the bytes of a ByteBuffer into a new array
+    abstract static class ArrayDecoding extends Decoding {
+        byte[] out;
+
+        void allocate(long length) {
+            this.out = new byte[(int)length];
+        }
+
+        static ArrayDecoding of(final byte[] in) {
+            return new ArrayDecoding() {
+                int get(long idx) {
+                    return in[(int)idx] & 0xFF;
+                }
+
+                void scan(long from, long to, Counts counts) {
+                    for (int idx = (int)from; idx < to; idx++) {
+                        counts.add(in[idx] & 0xFF, idx);
+                    }
+                }
+
+                long decode(DecoderCore core, long from, long to, long pos, long length) throws IOException {
+                    return core.decode(in, (int)from, (int)to, this.out, (int)pos, (int)(pos + length));
+                }
+            };
+        }
+
+        // absolute indices, the position of the buffer is not changed
+        static ArrayDecoding of(final ByteBuffer in) {
+            return new ArrayDecoding() {
+                int get(long idx) {
+                    return in.get((int)idx) & 0xFF;
+                }
+
+                void scan(long from, long to, Counts counts) {
+                    for (int idx = (int)from; idx < to; idx++) {
+                        counts.add(in.get(idx) & 0xFF, idx);
+                    }
+                }
+
+                long decode(DecoderCore core, long from, long to, long pos, long length) throws IOException {
+                    return core.decode(in, (int)from, (int)to, this.out, (int)pos, (int)(pos + length));
+                }
+            };
+        }
+    }
+
+    // decodes a file into a pre-sized output file, every segment maps its own part of both files
+    static final class FileDecoding extends Decoding {
+        private final FileChannel in;
+        private final File outFile;
+        private RandomAccessFile out;
+
+        FileDecoding(FileChannel in, File outFile) {
+            this.in = in;
+            this.outFile = outFile;
+        }
+
+        int get(long idx) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(1);
+            read(this.in, buffer, idx);
+            return buffer.get(0) & 0xFF;
+        }
+
+        void scan(long from, long to, Counts counts) throws IOException {
+            MappedByteBuffer buffer = this.in.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+            try {
+                for (int idx = 0, limit = buffer.limit(); idx < limit; idx++) {
+                    counts.add(buffer.get(idx) & 0xFF, from + idx);
+                }
+            } finally {
+                Mapping.unmap(buffer);
+            }
+        }
+
+        void allocate(long length) throws IOException {
+            this.out = new RandomAccessFile(this.outFile, "rw");
+            this.out.setLength(length);
+        }
+
+        long decode(DecoderCore core, long from, long to, long pos, long length) throws IOException {
+            MappedByteBuffer src = this.in.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+            MappedByteBuffer dst = this.out.getChannel().map(FileChannel.MapMode.READ_WRITE, pos, length);
+            try {
+                return from + core.decode(src, 0, src.limit(), new BufferByteSink(dst));
+            } finally {
+                Mapping.unmap(src);
+                Mapping.unmap(dst);
+            }
+        }
+
+        void close() throws IOException {
+            if (this.out != null) {
+                this.out.close();
+            }
+        }
+    }
+
+    // index after the next count data characters starting at idx, or end if there are not enough
+    private static long skip(final Decoding in, long idx, final long end, int count) throws IOException {
+        while (count > 0 && idx < end) {
+            int ch = in.get(idx++);
+            if (ch != '=' && !DecoderCore.isSpace(ch)) {
+                count--;
+            }
+        }
+        return idx;
+    }
+
+    // Decodes a complete base64 stream in[off..end) in count segments without a shared state. A first pass
+    // counts the data characters of each segment, which gives the group alignment at every split point. Each
+    // split is then moved forward to the next group boundary and the segments are decoded into their offsets.
+    // The prototype ends up in the state of the last segment, as after decoding sequentially. Returns false before allocating the output if the input needs the sequential path: padding before the
+    // last group, an incomplete last group or anything else whose error reporting or concatenation semantics
+    // only the state machine gets right.
+    static boolean decode(final Decoding in, final DecoderCore prototype, final long off, final long end, final int count) throws IOException {
+        final long[] bounds = new long[count + 1];
+        for (int i = 0; i <= count; i++) {
+            bounds[i] = off + (end - off) / count * i + (end - off) % count * i / count;
+        }
+        final Counts[] counts = new Counts[count];
+        invoke(count, new Segment() {
+            public void run(int i) throws IOException {
+                Counts c = new Counts();
+                in.scan(bounds[i], bounds[i + 1], c);
+                counts[i] = c;
+            }
+        });
+
+        // data characters before each split point
+        final long[] before = new long[count + 1];
+        int pads = 0;
+        long firstPad = Long.MAX_VALUE;
+        long lastData = -1;
+        for (int i = 0; i < count; i++) {
+            before[i + 1] = before[i] + counts[i].data;
+            pads += counts[i].pads;
+            firstPad = Math.min(firstPad, counts[i].firstPad);
+            lastData = Math.max(lastData, counts[i].lastData);
+        }
+        final long total = before[count];
+        // characters of the last group, which has to be padded to four unless padding is optional
+        final long rest = total % 4;
+        final boolean complete = rest == 0 ? pads == 0
+                : prototype.isPaddingRequired() ? rest + pads == 4 : rest != 1 && rest + pads <= 4;
+        if (firstPad < lastData || pads > 2 || !complete) {
+            return false;
+        }
+        final long length = total / 4 * 3 + (rest == 0 ? 0 : rest - 1);
+        in.allocate(length);
+
+        // unpadded input may end in the middle of a group, which a later call continues
+        final DecoderCore[] cores = new DecoderCore[count];
+        invoke(count, new Segment() {
+            public void run(int i) throws IOException {
+                long start = skip(in, bounds[i], end, (int)((4 - before[i] % 4) % 4));
+                long stop = i + 1 < count ? skip(in, bounds[i + 1], end, (int)((4 - before[i + 1] % 4) % 4)) : end;
+                if (start < stop) {
+                    long pos = (before[i] + 3) / 4 * 3;
+                    long next = i + 1 < count ? (before[i + 1] + 3) / 4 * 3 : length;
+                    DecoderCore core = prototype.fork();
+                    if (in.decode(core, start, stop, pos, Math.min(next, length) - pos) != stop) {
+                        throw new IllegalStateException("Segment " + i + " exceeds its output");
+                    }
+                    core.checkComplete();
+                    cores[i] = core;
+                }
+            }
+        });
+        for (int i = count - 1; i >= 0; i--) {
+            if (cores[i] != null) {
+                prototype.join(cores[i]);
+                break;
+            }
+        }
+        return true;
+    }
+}
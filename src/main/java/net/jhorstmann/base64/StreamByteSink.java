@@ -0,0 +1,21 @@
+package net.jhorstmann.base64;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+final class StreamByteSink implements ByteSink {
+
+    private final OutputStream out;
+
+    StreamByteSink(OutputStream out) {
+        this.out = out;
+    }
+
+    public int remaining() {
+        return Integer.MAX_VALUE;
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+    }
+}
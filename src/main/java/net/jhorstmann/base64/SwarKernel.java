@@ -0,0 +1,234 @@
+package net.jhorstmann.base64;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// SIMD within a register: eight characters are processed as the byte lanes of a single long
+final class SwarKernel extends TableKernel {
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH = 0x8080808080808080L;
+
+    // The last two characters of the alphabet and the lane offsets for them. Offsets are split into the
+    // non-negative parts that are added and subtracted, so no lane ever overflows or borrows.
+    private final int char62;
+    private final int char63;
+    private final long encodeAdd62;
+    private final long encodeSub62;
+    private final long encodeAdd63;
+    private final long encodeSub63;
+    private final long decodeAdd62;
+    private final long decodeSub62;
+    private final long decodeAdd63;
+    private final long decodeSub63;
+
+    SwarKernel(Base64Tables tables) {
+        super("swar", tables);
+        final int char62 = this.char62 = tables.alphabet[62];
+        final int char63 = this.char63 = tables.alphabet[63];
+        // without the adjustment 62 and 63 would be encoded as '0' + 10 and '0' + 11
+        int delta62 = char62 - ('0' + 10);
+        int delta63 = char63 - char62 - 1;
+        this.encodeAdd62 = Math.max(delta62, 0);
+        this.encodeSub62 = Math.max(-delta62, 0);
+        this.encodeAdd63 = Math.max(delta63, 0);
+        this.encodeSub63 = Math.max(-delta63, 0);
+        this.decodeAdd62 = Math.max(62 - char62, 0);
+        this.decodeSub62 = Math.max(char62 - 62, 0);
+        this.decodeAdd63 = Math.max(63 - char63, 0);
+        this.decodeSub63 = Math.max(char63 - 63, 0);
+    }
+
+    // 0x80 in every lane whose value is >= k, all lanes have to be < 0x80 and 0 < k <= 0x80
+    private static long ge(final long x, final int k) {
+        return (x + (0x80 - k) * ONES) & HIGH;
+    }
+
+    // 0x80 in every lane whose value is in [lo, hi]
+    private static long between(final long x, final int lo, final int hi) {
+        return ge(x, lo) & ~ge(x, hi + 1);
+    }
+
+    // encodes the lower 48 bits into eight ascii characters, the first one in the most significant lane
+    long encode(final long bits) {
+        long x = (bits & 0xFFFFFFL) | (bits << 8 & 0xFFFFFF00000000L);
+        x = (x & 0x00000FFF00000FFFL) | (x << 4 & 0x0FFF00000FFF0000L);
+        x = (x & 0x003F003F003F003FL) | (x << 2 & 0x3F003F003F003F00L);
+        long ge26 = ge(x, 26) >>> 7;
+        long ge52 = ge(x, 52) >>> 7;
+        long ge62 = ge(x, 62) >>> 7;
+        long ge63 = ge(x, 63) >>> 7;
+        // 'A' = v+65, 'a' = v+71, '0' = v-4, the last two characters are adjusted from there
+        return (x + 65 * ONES + 6 * ge26 + this.encodeAdd62 * ge62 + this.encodeAdd63 * ge63)
+                - (75 * ge52 + this.encodeSub62 * ge62 + this.encodeSub63 * ge63);
+    }
+
+    void encode(final long bits, final char[] out, final int pos) {
+        long ascii = encode(bits);
+        out[pos]     = (char)(ascii >>> 56);
+        out[pos + 1] = (char)(ascii >>> 48 & 0xFF);
+        out[pos + 2] = (char)(ascii >>> 40 & 0xFF);
+        out[pos + 3] = (char)(ascii >>> 32 & 0xFF);
+        out[pos + 4] = (char)(ascii >>> 24 & 0xFF);
+        out[pos + 5] = (char)(ascii >>> 16 & 0xFF);
+        out[pos + 6] = (char)(ascii >>> 8 & 0xFF);
+        out[pos + 7] = (char)(ascii & 0xFF);
+    }
+
+    // decodes eight ascii characters into 48 bits, returns -1 if any of them is not in the alphabet
+    long decode(final long chars) {
+        if ((chars & HIGH) != 0) {
+            return -1;
+        }
+        long upper = between(chars, 'A', 'Z');
+        long lower = between(chars, 'a', 'z');
+        long digit = between(chars, '0', '9');
+        long is62  = between(chars, this.char62, this.char62) >>> 7;
+        long is63  = between(chars, this.char63, this.char63) >>> 7;
+        if ((upper | lower | digit | is62 << 7 | is63 << 7) != HIGH) {
+            return -1;
+        }
+        long x = (chars + 4 * (digit >>> 7) + this.decodeAdd62 * is62 + this.decodeAdd63 * is63)
+                - (65 * (upper >>> 7) + 71 * (lower >>> 7) + this.decodeSub62 * is62 + this.decodeSub63 * is63);
+        x = (x & 0x003F003F003F003FL) | (x >>> 2 & 0x0FC00FC00FC00FC0L);
+        x = (x & 0x00000FFF00000FFFL) | (x >>> 4 & 0x00FFF00000FFF000L);
+        return (x & 0xFFFFFFL) | (x >>> 8 & 0xFFFFFF000000L);
+    }
+
+    private static long getLong(final ByteBuffer in, final int idx) {
+        long word = in.getLong(idx);
+        return in.order() == ByteOrder.BIG_ENDIAN ? word : Long.reverseBytes(word);
+    }
+
+    private static void putLong(final ByteBuffer out, final int pos, final long word) {
+        out.putLong(pos, out.order() == ByteOrder.BIG_ENDIAN ? word : Long.reverseBytes(word));
+    }
+
+    @Override
+    void encode(final byte[] in, int idx, final int groups, final char[] out, int pos) {
+        final ByteBuffer view = ByteBuffer.wrap(in);
+        int i = 0;
+        // 6 bytes are encoded per step, but a whole word is read
+        for (; i + 2 <= groups && in.length - idx >= 8; i += 2) {
+            encode(view.getLong(idx) >>> 16, out, pos);
+            idx += 6;
+            pos += 8;
+        }
+        super.encode(in, idx, groups - i, out, pos);
+    }
+
+    @Override
+    void encode(final ByteBuffer in, int idx, final int groups, final char[] out, int pos) {
+        final int limit = in.limit();
+        int i = 0;
+        for (; i + 2 <= groups && limit - idx >= 8; i += 2) {
+            encode(getLong(in, idx) >>> 16, out, pos);
+            idx += 6;
+            pos += 8;
+        }
+        super.encode(in, idx, groups - i, out, pos);
+    }
+
+    @Override
+    void encode(final byte[] in, int idx, final int groups, final byte[] out, int pos) {
+        final ByteBuffer inView = ByteBuffer.wrap(in);
+        final ByteBuffer outView = ByteBuffer.wrap(out);
+        int i = 0;
+        for (; i + 2 <= groups && in.length - idx >= 8; i += 2) {
+            outView.putLong(pos, encode(inView.getLong(idx) >>> 16));
+            idx += 6;
+            pos += 8;
+        }
+        super.encode(in, idx, groups - i, out, pos);
+    }
+
+    @Override
+    void encode(final ByteBuffer in, int idx, final int groups, final ByteBuffer out, int pos) {
+        final int limit = in.limit();
+        int i = 0;
+        for (; i + 2 <= groups && limit - idx >= 8; i += 2) {
+            putLong(out, pos, encode(getLong(in, idx) >>> 16));
+            idx += 6;
+            pos += 8;
+        }
+        super.encode(in, idx, groups - i, out, pos);
+    }
+
+    @Override
+    void encodeLines(final byte[] in, int idx, final int lines, final int groupsPerLine, final char[] separator, final byte[] out, int pos) {
+        final ByteBuffer inView = ByteBuffer.wrap(in);
+        final ByteBuffer outView = ByteBuffer.wrap(out);
+        final Base64Tables tables = this.tables;
+        for (int line = 0; line < lines; line++) {
+            pos = writeSeparator(separator, out, pos);
+            int i = 0;
+            for (; i + 2 <= groupsPerLine && in.length - idx >= 8; i += 2) {
+                outView.putLong(pos, encode(inView.getLong(idx) >>> 16));
+                idx += 6;
+                pos += 8;
+            }
+            for (; i < groupsPerLine; i++) {
+                tables.encodeGroup((in[idx] & 0xFF) << 16 | (in[idx + 1] & 0xFF) << 8 | (in[idx + 2] & 0xFF), out, pos);
+                idx += 3;
+                pos += 4;
+            }
+        }
+    }
+
+    @Override
+    void encodeLines(final byte[] in, int idx, final int lines, final int groupsPerLine, final char[] separator, final char[] out, int pos) {
+        final ByteBuffer view = ByteBuffer.wrap(in);
+        final Base64Tables tables = this.tables;
+        for (int line = 0; line < lines; line++) {
+            pos = writeSeparator(separator, out, pos);
+            int i = 0;
+            for (; i + 2 <= groupsPerLine && in.length - idx >= 8; i += 2) {
+                encode(view.getLong(idx) >>> 16, out, pos);
+                idx += 6;
+                pos += 8;
+            }
+            for (; i < groupsPerLine; i++) {
+                tables.encodeGroup((in[idx] & 0xFF) << 16 | (in[idx + 1] & 0xFF) << 8 | (in[idx + 2] & 0xFF), out, pos);
+                idx += 3;
+                pos += 4;
+            }
+        }
+    }
+
+    private static void writeBits(final byte[] out, final int pos, final long bits) {
+        writeInt(out, pos, (int)(bits >>> 16));
+        out[pos + 4] = (byte)(bits >> 8);
+        out[pos + 5] = (byte)bits;
+    }
+
+    @Override
+    int decode(final byte[] in, int idx, final int groups, final byte[] out, int pos) {
+        final ByteBuffer view = ByteBuffer.wrap(in);
+        int i = 0;
+        for (; i + 2 <= groups; i += 2) {
+            long bits = decode(view.getLong(idx));
+            if (bits < 0) {
+                break;
+            }
+            writeBits(out, pos, bits);
+            idx += 8;
+            pos += 6;
+        }
+        return i + super.decode(in, idx, groups - i, out, pos);
+    }
+
+    @Override
+    int decode(final ByteBuffer in, int idx, final int groups, final byte[] out, int pos) {
+        int i = 0;
+        for (; i + 2 <= groups; i += 2) {
+            long bits = decode(getLong(in, idx));
+            if (bits < 0) {
+                break;
+            }
+            writeBits(out, pos, bits);
+            idx += 8;
+            pos += 6;
+        }
+        return i + super.decode(in, idx, groups - i, out, pos);
+    }
+}
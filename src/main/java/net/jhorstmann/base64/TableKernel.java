@@ -0,0 +1,126 @@
+package net.jhorstmann.base64;
+
+import java.nio.ByteBuffer;
+
+// one group per iteration using the lookup tables, lowest setup cost for short inputs
+class TableKernel extends Base64Kernel {
+
+    final Base64Tables tables;
+
+    TableKernel(Base64Tables tables) {
+        this("table", tables);
+    }
+
+    TableKernel(String name, Base64Tables tables) {
+        super(name);
+        this.tables = tables;
+    }
+
+    @Override
+    void encode(final byte[] in, int idx, final int groups, final char[] out, int pos) {
+        final Base64Tables tables = this.tables;
+        for (int i = 0; i < groups; i++) {
+            tables.encodeGroup((in[idx] & 0xFF) << 16 | (in[idx + 1] & 0xFF) << 8 | (in[idx + 2] & 0xFF), out, pos);
+            idx += 3;
+            pos += 4;
+        }
+    }
+
+    @Override
+    void encode(final ByteBuffer in, int idx, final int groups, final char[] out, int pos) {
+        final Base64Tables tables = this.tables;
+        for (int i = 0; i < groups; i++) {
+            tables.encodeGroup((in.get(idx) & 0xFF) << 16 | (in.get(idx + 1) & 0xFF) << 8 | (in.get(idx + 2) & 0xFF), out, pos);
+            idx += 3;
+            pos += 4;
+        }
+    }
+
+    @Override
+    void encode(final byte[] in, int idx, final int groups, final byte[] out, int pos) {
+        final Base64Tables tables = this.tables;
+        for (int i = 0; i < groups; i++) {
+            tables.encodeGroup((in[idx] & 0xFF) << 16 | (in[idx + 1] & 0xFF) << 8 | (in[idx + 2] & 0xFF), out, pos);
+            idx += 3;
+            pos += 4;
+        }
+    }
+
+    @Override
+    void encode(final ByteBuffer in, int idx, final int groups, final ByteBuffer out, int pos) {
+        final Base64Tables tables = this.tables;
+        for (int i = 0; i < groups; i++) {
+            tables.encodeGroup((in.get(idx) & 0xFF) << 16 | (in.get(idx + 1) & 0xFF) << 8 | (in.get(idx + 2) & 0xFF), out, pos);
+            idx += 3;
+            pos += 4;
+        }
+    }
+
+    @Override
+    int decode(final byte[] in, int idx, final int groups, final byte[] out, int pos) {
+        final Base64Tables tables = this.tables;
+        for (int i = 0; i < groups; i++) {
+            int bits = tables.decodeGroup(in[idx] & 0xFF, in[idx + 1] & 0xFF, in[idx + 2] & 0xFF, in[idx + 3] & 0xFF);
+            if (bits < 0) {
+                return i;
+            }
+            writeGroup(out, pos, bits);
+            idx += 4;
+            pos += 3;
+        }
+        return groups;
+    }
+
+    @Override
+    int decode(final char[] in, int idx, final int groups, final byte[] out, int pos) {
+        final Base64Tables tables = this.tables;
+        for (int i = 0; i < groups; i++) {
+            int a = in[idx], b = in[idx + 1], c = in[idx + 2], d = in[idx + 3];
+            if (((a | b | c | d) & 0xFF00) != 0) {
+                return i;
+            }
+            int bits = tables.decodeGroup(a, b, c, d);
+            if (bits < 0) {
+                return i;
+            }
+            writeGroup(out, pos, bits);
+            idx += 4;
+            pos += 3;
+        }
+        return groups;
+    }
+
+    @Override
+    int decode(final CharSequence in, int idx, final int groups, final byte[] out, int pos) {
+        final Base64Tables tables = this.tables;
+        for (int i = 0; i < groups; i++) {
+            int a = in.charAt(idx), b = in.charAt(idx + 1), c = in.charAt(idx + 2), d = in.charAt(idx + 3);
+            if (((a | b | c | d) & 0xFF00) != 0) {
+                return i;
+            }
+            int bits = tables.decodeGroup(a, b, c, d);
+            if (bits < 0) {
+                return i;
+            }
+            writeGroup(out, pos, bits);
+            idx += 4;
+            pos += 3;
+        }
+        return groups;
+    }
+
+    @Override
+    int decode(final ByteBuffer in, int idx, final int groups, final byte[] out, int pos) {
+        final Base64Tables tables = this.tables;
+        for (int i = 0; i < groups; i++) {
+            int bits = tables.decodeGroup(in.get(idx) & 0xFF, in.get(idx + 1) & 0xFF, in.get(idx + 2) & 0xFF, in.get(idx + 3) & 0xFF);
+            if (bits < 0) {
+                return i;
+            }
+            writeGroup(out, pos, bits);
+            idx += 4;
+            pos += 3;
+        }
+        return groups;
+    }
+}
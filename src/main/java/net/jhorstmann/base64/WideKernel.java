@@ -0,0 +1,108 @@
+package net.jhorstmann.base64;
+
+// four groups per iteration: 12 bytes are handled as three words, 16 characters are validated with a single check
+class WideKernel extends TableKernel {
+
+    WideKernel(Base64Tables tables) {
+        this("wide", tables);
+    }
+
+    WideKernel(String name, Base64Tables tables) {
+        super(name, tables);
+    }
+
+    @Override
+    void encode(final byte[] in, int idx, final int groups, final char[] out, int pos) {
+        final Base64Tables tables = this.tables;
+        int i = 0;
+        for (; i + 4 <= groups; i += 4) {
+            int w0 = readInt(in, idx);
+            int w1 = readInt(in, idx + 4);
+            int w2 = readInt(in, idx + 8);
+            tables.encodeGroup(w0 >>> 8, out, pos);
+            tables.encodeGroup((w0 << 16 | w1 >>> 16) & 0xFFFFFF, out, pos + 4);
+            tables.encodeGroup((w1 << 8 | w2 >>> 24) & 0xFFFFFF, out, pos + 8);
+            tables.encodeGroup(w2 & 0xFFFFFF, out, pos + 12);
+            idx += 12;
+            pos += 16;
+        }
+        super.encode(in, idx, groups - i, out, pos);
+    }
+
+    @Override
+    void encode(final byte[] in, int idx, final int groups, final byte[] out, int pos) {
+        final Base64Tables tables = this.tables;
+        int i = 0;
+        for (; i + 4 <= groups; i += 4) {
+            int w0 = readInt(in, idx);
+            int w1 = readInt(in, idx + 4);
+            int w2 = readInt(in, idx + 8);
+            tables.encodeGroup(w0 >>> 8, out, pos);
+            tables.encodeGroup((w0 << 16 | w1 >>> 16) & 0xFFFFFF, out, pos + 4);
+            tables.encodeGroup((w1 << 8 | w2 >>> 24) & 0xFFFFFF, out, pos + 8);
+            tables.encodeGroup(w2 & 0xFFFFFF, out, pos + 12);
+            idx += 12;
+            pos += 16;
+        }
+        super.encode(in, idx, groups - i, out, pos);
+    }
+
+    private static int decodeGroup(final Base64Tables tables, final byte[] in, final int idx) {
+        return tables.decodeGroup(in[idx] & 0xFF, in[idx + 1] & 0xFF, in[idx + 2] & 0xFF, in[idx + 3] & 0xFF);
+    }
+
+    private static int decodeGroup(final Base64Tables tables, final char[] in, final int idx) {
+        return tables.decodeGroup(in[idx], in[idx + 1], in[idx + 2], in[idx + 3]);
+    }
+
+    private static void writeGroups(final byte[] out, final int pos, final int v0, final int v1, final int v2, final int v3) {
+        writeInt(out, pos, v0 << 8 | v1 >>> 16);
+        writeInt(out, pos + 4, v1 << 16 | v2 >>> 8);
+        writeInt(out, pos + 8, v2 << 24 | v3);
+    }
+
+    @Override
+    int decode(final byte[] in, int idx, final int groups, final byte[] out, int pos) {
+        final Base64Tables tables = this.tables;
+        int i = 0;
+        for (; i + 4 <= groups; i += 4) {
+            int v0 = decodeGroup(tables, in, idx);
+            int v1 = decodeGroup(tables, in, idx + 4);
+            int v2 = decodeGroup(tables, in, idx + 8);
+            int v3 = decodeGroup(tables, in, idx + 12);
+            if ((v0 | v1 | v2 | v3) < 0) {
+                break;
+            }
+            writeGroups(out, pos, v0, v1, v2, v3);
+            idx += 16;
+            pos += 12;
+        }
+        return i + super.decode(in, idx, groups - i, out, pos);
+    }
+
+    @Override
+    int decode(final char[] in, int idx, final int groups, final byte[] out, int pos) {
+        final Base64Tables tables = this.tables;
+        int i = 0;
+        for (; i + 4 <= groups; i += 4) {
+            int high = 0;
+            for (int j = idx; j < idx + 16; j++) {
+                high |= in[j];
+            }
+            if ((high & 0xFF00) != 0) {
+                break;
+            }
+            int v0 = decodeGroup(tables, in, idx);
+            int v1 = decodeGroup(tables, in, idx + 4);
+            int v2 = decodeGroup(tables, in, idx + 8);
+            int v3 = decodeGroup(tables, in, idx + 12);
+            if ((v0 | v1 | v2 | v3) < 0) {
+                break;
+            }
+            writeGroups(out, pos, v0, v1, v2, v3);
+            idx += 16;
+            pos += 12;
+        }
+        return i + super.decode(in, idx, groups - i, out, pos);
+    }
+}
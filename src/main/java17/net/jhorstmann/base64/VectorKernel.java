@@ -0,0 +1,216 @@
+package net.jhorstmann.base64;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+// Shuffle based lookups in the style of the SSSE3/AVX2 base64 algorithms on the widest vectors of the machine, 16, 32
+// or 64 bytes per step, what is left of an input goes to WideKernel. Only part of the multi-release jar for java 17
+// and later, Base64Tables loads it by name and falls back to the scalar kernels without it. The char[] paths are
+// inherited as well, java 17 has no vector access to char arrays. The vector code is written out in every loop, C2
+// only keeps vectors in registers when the species is a constant and nothing is left to a call.
+final class VectorKernel extends WideKernel {
+
+    private static final VectorSpecies<Byte> PREFERRED = ByteVector.SPECIES_PREFERRED;
+    // groups per step
+    private static final int STEP = PREFERRED.length() / 4;
+    // lookup tables are repeated up to the widest vectors, indices never leave the first 16 bytes
+    private static final int LUT_LENGTH = 64;
+
+    // the three input bytes of each group as b1 b0 b2 b1 in the four bytes of its int lane
+    private static final VectorShuffle<Byte> ENCODE_SHUFFLE = encodeShuffle();
+    // the three decoded bytes of each int lane in output order, the last quarter of the vector is left over
+    private static final VectorShuffle<Byte> DECODE_SHUFFLE = decodeShuffle();
+
+    // offset from a 6 bit value to its character, indexed by the reduced value of the encode loops
+    private final byte[] encodeOffsets = new byte[LUT_LENGTH];
+    // a character is invalid if the bit of its high nibble is set in the entry of its low nibble
+    private final byte[] decodeLow = new byte[LUT_LENGTH];
+    private final byte[] decodeHigh = new byte[LUT_LENGTH];
+    // offset from a character to its value by high nibble, the last two characters are set separately
+    private final byte[] decodeRoll = new byte[LUT_LENGTH];
+    private final byte char62;
+    private final byte char63;
+
+    VectorKernel(Base64Tables tables) {
+        super("vector", tables);
+        if (PREFERRED.vectorByteSize() < 16) {
+            throw new UnsupportedOperationException("No 128 bit vectors");
+        }
+        final char[] alphabet = tables.alphabet;
+        this.char62 = (byte)alphabet[62];
+        this.char63 = (byte)alphabet[63];
+        byte[] offsets = new byte[16];
+        offsets[0] = (byte)(alphabet[26] - 26);
+        for (int i = 1; i <= 10; i++) {
+            offsets[i] = (byte)(alphabet[52] - 52);
+        }
+        offsets[11] = (byte)(alphabet[62] - 62);
+        offsets[12] = (byte)(alphabet[63] - 63);
+        offsets[13] = (byte)alphabet[0];
+        for (int i = 0; i < 64; i++) {
+            int reduced = i < 26 ? 13 : Math.max(i - 51, 0);
+            if ((byte)(i + offsets[reduced]) != (byte)alphabet[i]) {
+                throw new UnsupportedOperationException("Alphabet without ranges");
+            }
+        }
+        byte[] low = new byte[16];
+        byte[] high = new byte[16];
+        byte[] roll = new byte[16];
+        boolean[] rolled = new boolean[16];
+        for (int hi = 0; hi < 16; hi++) {
+            high[hi] = (byte)(hi < 8 ? 1 << hi : 0xFF);
+            for (int lo = 0; lo < 16; lo++) {
+                int ch = hi << 4 | lo;
+                int value = tables.codes3[ch];
+                if (value < 0) {
+                    low[lo] |= hi < 8 ? 1 << hi : 0;
+                } else if (value < 62) {
+                    if (rolled[hi] && roll[hi] != (byte)(value - ch)) {
+                        throw new UnsupportedOperationException("Alphabet without ranges");
+                    }
+                    roll[hi] = (byte)(value - ch);
+                    rolled[hi] = true;
+                }
+            }
+        }
+        for (int lo = 0; lo < 16; lo++) {
+            // characters above 127 are only rejected through invalid control characters of the same low nibble
+            if ((low[lo] & 1) == 0) {
+                throw new UnsupportedOperationException("Alphabet with control characters");
+            }
+        }
+        for (int i = 0; i < LUT_LENGTH; i++) {
+            this.encodeOffsets[i] = offsets[i & 15];
+            this.decodeLow[i] = low[i & 15];
+            this.decodeHigh[i] = high[i & 15];
+            this.decodeRoll[i] = roll[i & 15];
+        }
+    }
+
+    private static VectorShuffle<Byte> encodeShuffle() {
+        int[] indices = new int[PREFERRED.length()];
+        for (int i = 0; i < indices.length; i += 4) {
+            int idx = i / 4 * 3;
+            indices[i] = idx + 1;
+            indices[i + 1] = idx;
+            indices[i + 2] = idx + 2;
+            indices[i + 3] = idx + 1;
+        }
+        return VectorShuffle.fromArray(PREFERRED, indices, 0);
+    }
+
+    private static VectorShuffle<Byte> decodeShuffle() {
+        int[] indices = new int[PREFERRED.length()];
+        for (int i = 0; i < indices.length / 4; i++) {
+            indices[i * 3] = i * 4 + 2;
+            indices[i * 3 + 1] = i * 4 + 1;
+            indices[i * 3 + 2] = i * 4;
+        }
+        return VectorShuffle.fromArray(PREFERRED, indices, 0);
+    }
+
+    // Each step reads a whole vector but only consumes 3/4 of it. The four 6 bit values of a group go to the four
+    // bytes of its int lane, first value lowest. Of those, 51 and below are reduced to 0, the digits to 1 to 10, the
+    // last two values to 11 and 12 and upper case letters to 13, which selects the offset to their character.
+    @Override
+    void encode(final byte[] in, int idx, final int groups, final byte[] out, int pos) {
+        final ByteVector offsets = ByteVector.fromArray(PREFERRED, this.encodeOffsets, 0);
+        int i = 0;
+        for (; i + STEP <= groups && in.length - idx >= PREFERRED.length(); i += STEP) {
+            IntVector x = ByteVector.fromArray(PREFERRED, in, idx).rearrange(ENCODE_SHUFFLE).reinterpretAsInts();
+            ByteVector values = x.lanewise(VectorOperators.LSHR, 10).and(0x3F)
+                    .or(x.lanewise(VectorOperators.LSHL, 4).and(0x3F00))
+                    .or(x.lanewise(VectorOperators.LSHR, 6).and(0x3F0000))
+                    .or(x.lanewise(VectorOperators.LSHL, 8).and(0x3F000000))
+                    .reinterpretAsBytes();
+            ByteVector reduced = values.sub((byte)51).max((byte)0).blend((byte)13, values.lt((byte)26));
+            values.add(reduced.selectFrom(offsets)).intoArray(out, pos);
+            idx += STEP * 3;
+            pos += STEP * 4;
+        }
+        super.encode(in, idx, groups - i, out, pos);
+    }
+
+    @Override
+    void encode(final ByteBuffer in, int idx, final int groups, final ByteBuffer out, int pos) {
+        final ByteVector offsets = ByteVector.fromArray(PREFERRED, this.encodeOffsets, 0);
+        final int limit = in.limit();
+        int i = 0;
+        for (; i + STEP <= groups && limit - idx >= PREFERRED.length(); i += STEP) {
+            IntVector x = ByteVector.fromByteBuffer(PREFERRED, in, idx, ByteOrder.LITTLE_ENDIAN)
+                    .rearrange(ENCODE_SHUFFLE).reinterpretAsInts();
+            ByteVector values = x.lanewise(VectorOperators.LSHR, 10).and(0x3F)
+                    .or(x.lanewise(VectorOperators.LSHL, 4).and(0x3F00))
+                    .or(x.lanewise(VectorOperators.LSHR, 6).and(0x3F0000))
+                    .or(x.lanewise(VectorOperators.LSHL, 8).and(0x3F000000))
+                    .reinterpretAsBytes();
+            ByteVector reduced = values.sub((byte)51).max((byte)0).blend((byte)13, values.lt((byte)26));
+            values.add(reduced.selectFrom(offsets)).intoByteBuffer(out, pos, ByteOrder.LITTLE_ENDIAN);
+            idx += STEP * 3;
+            pos += STEP * 4;
+        }
+        super.encode(in, idx, groups - i, out, pos);
+    }
+
+    // Characters outside the alphabet stop the loop and are left to WideKernel to find. Each step stores a whole
+    // vector, the last quarter of it lands in the output of the following groups, so steps only run while enough
+    // groups follow. The 24 bits of a group are put together in its int lane, the first character holds the highest.
+    @Override
+    int decode(final byte[] in, int idx, final int groups, final byte[] out, int pos) {
+        final ByteVector low = ByteVector.fromArray(PREFERRED, this.decodeLow, 0);
+        final ByteVector high = ByteVector.fromArray(PREFERRED, this.decodeHigh, 0);
+        final ByteVector roll = ByteVector.fromArray(PREFERRED, this.decodeRoll, 0);
+        int i = 0;
+        for (; i + STEP + (STEP + 2) / 3 <= groups; i += STEP) {
+            ByteVector chars = ByteVector.fromArray(PREFERRED, in, idx);
+            ByteVector hi = chars.lanewise(VectorOperators.LSHR, 4).and((byte)0x0F);
+            if (!hi.selectFrom(high).and(chars.and((byte)0x0F).selectFrom(low)).eq((byte)0).allTrue()) {
+                break;
+            }
+            IntVector x = chars.add(hi.selectFrom(roll))
+                    .blend((byte)62, chars.eq(this.char62))
+                    .blend((byte)63, chars.eq(this.char63))
+                    .reinterpretAsInts();
+            x.and(0x3F).lanewise(VectorOperators.LSHL, 18)
+                    .or(x.and(0x3F00).lanewise(VectorOperators.LSHL, 4))
+                    .or(x.and(0x3F0000).lanewise(VectorOperators.LSHR, 10))
+                    .or(x.lanewise(VectorOperators.LSHR, 24))
+                    .reinterpretAsBytes().rearrange(DECODE_SHUFFLE).intoArray(out, pos);
+            idx += STEP * 4;
+            pos += STEP * 3;
+        }
+        return i + super.decode(in, idx, groups - i, out, pos);
+    }
+
+    @Override
+    int decode(final ByteBuffer in, int idx, final int groups, final byte[] out, int pos) {
+        final ByteVector low = ByteVector.fromArray(PREFERRED, this.decodeLow, 0);
+        final ByteVector high = ByteVector.fromArray(PREFERRED, this.decodeHigh, 0);
+        final ByteVector roll = ByteVector.fromArray(PREFERRED, this.decodeRoll, 0);
+        int i = 0;
+        for (; i + STEP + (STEP + 2) / 3 <= groups; i += STEP) {
+            ByteVector chars = ByteVector.fromByteBuffer(PREFERRED, in, idx, ByteOrder.LITTLE_ENDIAN);
+            ByteVector hi = chars.lanewise(VectorOperators.LSHR, 4).and((byte)0x0F);
+            if (!hi.selectFrom(high).and(chars.and((byte)0x0F).selectFrom(low)).eq((byte)0).allTrue()) {
+                break;
+            }
+            IntVector x = chars.add(hi.selectFrom(roll))
+                    .blend((byte)62, chars.eq(this.char62))
+                    .blend((byte)63, chars.eq(this.char63))
+                    .reinterpretAsInts();
+            x.and(0x3F).lanewise(VectorOperators.LSHL, 18)
+                    .or(x.and(0x3F00).lanewise(VectorOperators.LSHL, 4))
+                    .or(x.and(0x3F0000).lanewise(VectorOperators.LSHR, 10))
+                    .or(x.lanewise(VectorOperators.LSHR, 24))
+                    .reinterpretAsBytes().rearrange(DECODE_SHUFFLE).intoArray(out, pos);
+            idx += STEP * 4;
+            pos += STEP * 3;
+        }
+        return i + super.decode(in, idx, groups - i, out, pos);
+    }
+}
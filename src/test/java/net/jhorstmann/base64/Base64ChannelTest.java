@@ -0,0 +1,116 @@
+package net.jhorstmann.base64;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class Base64ChannelTest {
+
+    // behaves like a non-blocking channel, every other call transfers nothing and the others at most 7 bytes
+    private static class TrickleChannel implements ReadableByteChannel, WritableByteChannel {
+        private final ByteBuffer data;
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        private int calls;
+
+        TrickleChannel(byte[] data) {
+            this.data = ByteBuffer.wrap(data);
+        }
+
+        public int read(ByteBuffer dst) {
+            if (!data.hasRemaining()) {
+                return -1;
+            }
+            if (calls++ % 2 == 0) {
+                return 0;
+            }
+            int len = Math.min(7, Math.min(dst.remaining(), data.remaining()));
+            for (int i = 0; i < len; i++) {
+                dst.put(data.get());
+            }
+            return len;
+        }
+
+        public int write(ByteBuffer src) {
+            if (calls++ % 2 == 0) {
+                return 0;
+            }
+            int len = Math.min(7, src.remaining());
+            for (int i = 0; i < len; i++) {
+                written.write(src.get());
+            }
+            return len;
+        }
+
+        public boolean isOpen() {
+            return true;
+        }
+
+        public void close() {
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        byte[] data = new byte[10000];
+        new Random(5).nextBytes(data);
+
+        TrickleChannel sink = new TrickleChannel(new byte[0]);
+        Base64WritableByteChannel out = new Base64WritableByteChannel(new Base64StreamEncoder(), sink, 64);
+        ByteBuffer src = ByteBuffer.wrap(data);
+        while (src.hasRemaining()) {
+            int len = Math.min(src.remaining(), 1 + src.position() % 100);
+            ByteBuffer part = src.duplicate();
+            part.limit(part.position() + len);
+            int written = out.write(part);
+            Assert.assertEquals(written, part.position() - src.position());
+            src.position(part.position());
+        }
+        out.close();
+        byte[] encoded = sink.written.toByteArray();
+        Assert.assertEquals(new Base64StreamEncoder().encode(data), new String(encoded, "US-ASCII"));
+
+        Base64ReadableByteChannel in = new Base64ReadableByteChannel(new Base64NIODecoder(), new TrickleChannel(encoded), 16);
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        for (int i = 0; ; i++) {
+            ByteBuffer dst = ByteBuffer.allocate(1 + i % 5);
+            int len = in.read(dst);
+            if (len == -1) {
+                break;
+            }
+            decoded.write(dst.array(), 0, len);
+        }
+        Assert.assertArrayEquals(data, decoded.toByteArray());
+    }
+
+    @Test
+    public void testNarrowLines() throws IOException {
+        byte[] data = new byte[1000];
+        new Random(6).nextBytes(data);
+        // every three bytes become four characters and a four character separator
+        Base64StreamEncoder encoder = new Base64StreamEncoder(Base64Alphabet.STANDARD, true, 4, "\r\n\r\n");
+        TrickleChannel sink = new TrickleChannel(new byte[0]);
+        Base64WritableByteChannel out = new Base64WritableByteChannel(encoder, sink, 64);
+        ByteBuffer src = ByteBuffer.wrap(data);
+        while (src.hasRemaining()) {
+            out.write(src);
+        }
+        out.close();
+        String expected = java.util.Base64.getMimeEncoder(4, "\r\n\r\n".getBytes("US-ASCII")).encodeToString(data);
+        Assert.assertEquals(expected, new String(sink.written.toByteArray(), "US-ASCII"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSeparatorLongerThanBuffer() {
+        StringBuilder separator = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            separator.append('\n');
+        }
+        new Base64WritableByteChannel(new Base64StreamEncoder(Base64Alphabet.STANDARD, true, 4, separator.toString()),
+                new TrickleChannel(new byte[0]), 64);
+    }
+}
@@ -0,0 +1,128 @@
+package net.jhorstmann.base64;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class Base64CodecTest {
+
+    private static void check(Base64Codec codec, Base64StreamEncoder encoder, Base64StreamDecoder decoder, byte[] data) throws IOException {
+        String expected = encoder.encode(data);
+        Assert.assertEquals(expected.length(), codec.encodedLength(data.length));
+        Assert.assertEquals(expected, codec.encode(data));
+        Assert.assertEquals(expected, new String(codec.encodeToBytes(data), "US-ASCII"));
+
+        byte[] out = new byte[expected.length() + 2];
+        Assert.assertEquals(expected.length(), codec.encodeInto(data, 0, data.length, out, 2));
+        Assert.assertEquals(expected, new String(out, 2, expected.length(), "US-ASCII"));
+
+        Assert.assertEquals(data.length, codec.decodedLength(expected));
+        Assert.assertArrayEquals(data, codec.decode(expected));
+        Assert.assertArrayEquals(data, codec.decode(expected.toCharArray()));
+        Assert.assertArrayEquals(data, codec.decode(expected.getBytes("US-ASCII")));
+        Assert.assertArrayEquals(data, codec.decode(new StringBuilder(expected)));
+        Assert.assertArrayEquals(data, decoder.decode(expected));
+
+        byte[] decoded = new byte[data.length + 1];
+        Assert.assertEquals(data.length, codec.decodeInto(expected.getBytes("US-ASCII"), decoded, 1));
+        Assert.assertArrayEquals(data, Arrays.copyOfRange(decoded, 1, data.length + 1));
+        if (data.length > 0) {
+            byte[] small = new byte[data.length - 1];
+            try {
+                codec.decodeInto(expected.toCharArray(), small, 0);
+                Assert.fail();
+            } catch (IndexOutOfBoundsException ex) {
+                Assert.assertArrayEquals(new byte[data.length - 1], small);
+            }
+            try {
+                codec.encodeInto(data, new byte[expected.length() - 1], 0);
+                Assert.fail();
+            } catch (IndexOutOfBoundsException ex) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testCodecs() throws IOException {
+        Random random = new Random(23);
+        for (int len = 0; len < 700; len += 1 + len / 8) {
+            byte[] data = new byte[len];
+            random.nextBytes(data);
+            check(Base64Codec.STANDARD, new Base64StreamEncoder(Base64Alphabet.STANDARD, true),
+                    new Base64StreamDecoder(), data);
+            check(Base64Codec.URL_SAFE, new Base64StreamEncoder(Base64Alphabet.URL_SAFE, false),
+                    new Base64StreamDecoder(Base64Alphabet.URL_SAFE, false), data);
+            check(Base64Codec.MIME, Base64StreamEncoder.mime(), new Base64StreamDecoder(), data);
+            check(Base64Codec.of(Base64Alphabet.STANDARD, false, 9, " \r\n"),
+                    new Base64StreamEncoder(Base64Alphabet.STANDARD, false, 9, " \r\n"),
+                    new Base64StreamDecoder(Base64Alphabet.STANDARD, false), data);
+            Assert.assertEquals(java.util.Base64.getMimeEncoder().encodeToString(data), Base64Codec.MIME.encode(data));
+        }
+    }
+
+    @Test
+    public void testDecodeVariants() throws IOException {
+        Assert.assertArrayEquals(new byte[]{'A', 'A', 'B'}, Base64Codec.STANDARD.decode(" QQ==\n QUI= \n"));
+        Assert.assertArrayEquals(new byte[]{'A', 'B'}, Base64Codec.URL_SAFE.decode("QUI"));
+        Assert.assertArrayEquals(new byte[]{'A', 'B'}, Base64Codec.URL_SAFE.decode("QUI="));
+        Assert.assertArrayEquals(new byte[]{'A'}, Base64Codec.URL_SAFE.decode("QQ="));
+        Assert.assertArrayEquals(new byte[]{'A'}, Base64Codec.URL_SAFE.decode("QQ"));
+        Assert.assertArrayEquals(new byte[0], Base64Codec.STANDARD.decode(""));
+    }
+
+    private static void checkInvalid(Base64Codec codec, String str, Class<? extends Exception> expected) {
+        try {
+            codec.decode(str);
+            Assert.fail(str);
+        } catch (Exception ex) {
+            Assert.assertEquals(str, expected, ex.getClass());
+        }
+    }
+
+    @Test
+    public void testInvalid() {
+        checkInvalid(Base64Codec.STANDARD, "QUI", IncompleteStreamException.class);
+        checkInvalid(Base64Codec.STANDARD, "QQ=", IncompleteStreamException.class);
+        checkInvalid(Base64Codec.STANDARD, "QUJDQ", IncompleteStreamException.class);
+        checkInvalid(Base64Codec.URL_SAFE, "QUJDQ", IncompleteStreamException.class);
+        checkInvalid(Base64Codec.STANDARD, "QQ=A", InvalidCharacterException.class);
+        checkInvalid(Base64Codec.STANDARD, "Q=", InvalidCharacterException.class);
+        checkInvalid(Base64Codec.STANDARD, "QU I", InvalidCharacterException.class);
+        checkInvalid(Base64Codec.STANDARD, "QUJ\u0144", InvalidCharacterException.class);
+        checkInvalid(Base64Codec.STANDARD, "QUJ-", InvalidCharacterException.class);
+        checkInvalid(Base64Codec.URL_SAFE, "QUJ+", InvalidCharacterException.class);
+    }
+
+    @Test
+    public void testShared() throws Exception {
+        final byte[] data = new byte[100 * 1024 + 1];
+        new Random(5).nextBytes(data);
+        final String expected = java.util.Base64.getMimeEncoder().encodeToString(data);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < 16; i++) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    public Boolean call() throws IOException {
+                        return expected.equals(Base64Codec.MIME.encode(data))
+                                && Arrays.equals(data, Base64Codec.MIME.decode(expected));
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                Assert.assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package net.jhorstmann.base64;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
@@ -89,4 +91,66 @@ public class Base64InputStreamTest {
 
     }
 
+    @Test
+    public void testByteStream() throws IOException {
+        byte[] bytes = randomBytes(100000);
+        byte[] base64 = new Base64StreamEncoder().encode(bytes).getBytes("US-ASCII");
+
+        InputStream in = new Base64InputStream(new ByteArrayInputStream(base64));
+        // nothing is buffered before the first read
+        Assert.assertEquals(0, in.available());
+        Assert.assertEquals(bytes[0], (byte)in.read());
+        Assert.assertTrue(in.available() > 0);
+        byte[] buf = new byte[5];
+        Assert.assertEquals(2, in.read(buf, 3, 2));
+        Assert.assertArrayEquals(Arrays.copyOfRange(bytes, 1, 3), Arrays.copyOfRange(buf, 3, 5));
+        Assert.assertEquals(1000, in.skip(1000));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Assert.assertEquals(bytes.length - 1003, ((Base64InputStream)in).transferTo(out));
+        Assert.assertArrayEquals(Arrays.copyOfRange(bytes, 1003, bytes.length), out.toByteArray());
+        Assert.assertEquals(-1, in.read());
+
+        try {
+            in = new Base64InputStream(new ByteArrayInputStream("QUJDR".getBytes("US-ASCII")));
+            while (in.read(buf) != -1) {
+            }
+            Assert.fail();
+        } catch (IncompleteStreamException ex) {
+        }
+    }
+
+    @Test
+    public void testAvailableMime() throws IOException {
+        for (boolean padding : new boolean[]{true, false}) {
+            byte[] bytes = randomBytes(10000);
+            String base64 = java.util.Base64.getMimeEncoder().encodeToString(bytes);
+            Base64StreamDecoder decoder = new Base64StreamDecoder(Base64Alphabet.STANDARD, padding);
+            // odd buffer sizes cut groups, line separators and the padding at the end of the buffer
+            for (int bufferSize : new int[]{5, 7, 77, 78, 256}) {
+                InputStream in = new Base64InputStream(decoder, new ByteArrayInputStream(base64.getBytes("US-ASCII")), bufferSize);
+                byte[] buf = new byte[bufferSize];
+                int pos = 0;
+                boolean positive = false;
+                while (true) {
+                    int available = in.available();
+                    Assert.assertTrue(available <= bytes.length - pos);
+                    positive |= available > 0;
+                    if (available > 0) {
+                        // available bytes are returned by a single read without touching the source
+                        int len = in.read(buf, 0, Math.min(available, buf.length));
+                        Assert.assertEquals(Math.min(available, buf.length), len);
+                        pos += len;
+                    } else {
+                        int len = in.read(buf, 0, 1 + pos % 3);
+                        if (len == -1) {
+                            break;
+                        }
+                        pos += len;
+                    }
+                }
+                Assert.assertEquals(bytes.length, pos);
+                Assert.assertTrue(positive);
+            }
+        }
+    }
 }
@@ -2,9 +2,19 @@ package net.jhorstmann.base64;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringReader;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -186,6 +196,814 @@ public class Base64Test {
         new Base64StreamDecoder().decode("SGFs\nbG8g\nV2Vs\ndA");
     }
 
+    @Test
+    public void testAlphabets() throws IOException {
+        Random random = new Random(4648);
+        for (int len = 0; len < 300; len++) {
+            byte[] data = new byte[len];
+            random.nextBytes(data);
+            String padded = java.util.Base64.getUrlEncoder().encodeToString(data);
+            String unpadded = java.util.Base64.getUrlEncoder().withoutPadding().encodeToString(data);
+            Assert.assertEquals(padded, new Base64StreamEncoder(Base64Alphabet.URL_SAFE, true).encode(data));
+            Assert.assertEquals(unpadded, new Base64StreamEncoder(Base64Alphabet.URL_SAFE, false).encode(data));
+            Assert.assertEquals(java.util.Base64.getEncoder().withoutPadding().encodeToString(data),
+                    new Base64StreamEncoder(Base64Alphabet.STANDARD, false).encode(data));
+            Base64StreamEncoder encoder = new Base64StreamEncoder(Base64Alphabet.URL_SAFE, false);
+            encoder.setParallelThreshold(0);
+            Assert.assertEquals(unpadded, encoder.encodeParallel(data));
+
+            Assert.assertArrayEquals(data, new Base64StreamDecoder(Base64Alphabet.URL_SAFE, true).decode(padded));
+            Assert.assertArrayEquals(data, new Base64StreamDecoder(Base64Alphabet.URL_SAFE, false).decode(padded));
+            Assert.assertArrayEquals(data, new Base64StreamDecoder(Base64Alphabet.URL_SAFE, false).decode(unpadded));
+            Base64StreamDecoder decoder = new Base64StreamDecoder(Base64Alphabet.URL_SAFE, false);
+            decoder.setParallelThreshold(0);
+            Assert.assertArrayEquals(data, decoder.decodeParallel(unpadded.getBytes("US-ASCII")));
+
+            ByteBuffer out = ByteBuffer.allocateDirect(len);
+            Base64NIODecoder nio = new Base64NIODecoder(Base64Alphabet.URL_SAFE, false);
+            for (int i = 0; i < unpadded.length(); i++) {
+                nio.decode(CharBuffer.wrap(unpadded, i, i + 1), out);
+            }
+            nio.checkComplete();
+            Assert.assertFalse(out.hasRemaining());
+
+            InputStream in = new Base64InputStream(new Base64StreamDecoder(Base64Alphabet.URL_SAFE, false), new StringReader(unpadded), 5);
+            byte[] actual = new byte[len];
+            int pos = 0;
+            int n;
+            while ((n = in.read(actual, pos, Math.min(2, len - pos))) > 0) {
+                pos += n;
+            }
+            Assert.assertArrayEquals(data, actual);
+            Assert.assertEquals(-1, in.read());
+
+            if (len % 3 != 0) {
+                try {
+                    new Base64StreamDecoder(Base64Alphabet.URL_SAFE, true).decode(unpadded);
+                    Assert.fail();
+                } catch (IncompleteStreamException ex) {
+                }
+            }
+        }
+        try {
+            new Base64StreamDecoder(Base64Alphabet.URL_SAFE, false).decode("QUJDR");
+            Assert.fail();
+        } catch (IncompleteStreamException ex) {
+        }
+        try {
+            new Base64StreamDecoder().decode("QUJD-_");
+            Assert.fail();
+        } catch (InvalidCharacterException ex) {
+        }
+    }
+
+    @Test
+    public void testEncodeLines() throws IOException {
+        Random random = new Random(42);
+        for (int len = 0; len < 1000; len += 7) {
+            byte[] data = new byte[len];
+            random.nextBytes(data);
+            String expected = new String(java.util.Base64.getMimeEncoder(76, new byte[]{'\n'}).encode(data), "US-ASCII");
+            Assert.assertEquals(expected, new Base64StreamEncoder().encode(data));
+
+            Base64StreamEncoder encoder = new Base64StreamEncoder();
+            StringBuilder out = new StringBuilder();
+            int split1 = random.nextInt(len + 1);
+            int split2 = split1 + random.nextInt(len - split1 + 1);
+            encoder.encode(data, 0, split1, out);
+            encoder.encode(data, split1, split2 - split1, out);
+            encoder.encode(data, split2, len - split2, out);
+            encoder.encodeFinal(out);
+            Assert.assertEquals(expected, out.toString());
+        }
+    }
+
+    private static byte[] decodeNIO(byte[] base64, boolean direct) throws IOException {
+        ByteBuffer in = direct ? ByteBuffer.allocateDirect(base64.length) : ByteBuffer.allocate(base64.length);
+        in.put(base64).flip();
+        ByteBuffer out = ByteBuffer.allocate(base64.length);
+        Base64NIODecoder decoder = new Base64NIODecoder();
+        decoder.decodeImpl(in, out);
+        decoder.checkComplete();
+        return Arrays.copyOf(out.array(), out.position());
+    }
+
+    @Test
+    public void testLineSeparators() throws IOException {
+        Random random = new Random(2045);
+        int[] widths = {4, 10, 64, 76, 78};
+        String[] separators = {"\r\n", "\n", " \t\r\n"};
+        for (int len = 0; len < 1000; len += 11) {
+            byte[] data = new byte[len];
+            random.nextBytes(data);
+            for (int width : widths) {
+                for (String separator : separators) {
+                    String expected = new String(java.util.Base64.getMimeEncoder(width, separator.getBytes("US-ASCII")).encode(data), "US-ASCII");
+                    Base64StreamEncoder encoder = new Base64StreamEncoder(Base64Alphabet.STANDARD, true, width, separator);
+                    Assert.assertEquals(expected, encoder.encode(data));
+
+                    encoder = new Base64StreamEncoder(Base64Alphabet.STANDARD, true, width, separator);
+                    byte[] out = new byte[expected.length()];
+                    int split = random.nextInt(len + 1);
+                    int pos = encoder.encode(data, 0, split, out, 0);
+                    pos += encoder.encode(data, split, len - split, out, pos);
+                    pos += encoder.encodeFinal(out, pos);
+                    Assert.assertEquals(expected.length(), pos);
+                    Assert.assertEquals(expected, new String(out, "US-ASCII"));
+
+                    encoder = new Base64StreamEncoder(Base64Alphabet.STANDARD, true, width, separator);
+                    encoder.setParallelThreshold(0);
+                    Assert.assertEquals(expected, encoder.encodeParallel(data));
+                    Assert.assertArrayEquals(data, new Base64StreamDecoder().decode(expected));
+                }
+            }
+            String mime = java.util.Base64.getMimeEncoder().encodeToString(data);
+            Assert.assertEquals(mime, Base64StreamEncoder.mime().encode(data));
+            Base64StreamEncoder encoder = Base64StreamEncoder.mime();
+            StringBuilder chars = new StringBuilder();
+            ByteBuffer direct = ByteBuffer.allocateDirect(len);
+            direct.put(data).flip();
+            encoder.encode(direct, chars);
+            encoder.encodeFinal(chars);
+            Assert.assertEquals(mime, chars.toString());
+        }
+        // only characters of the chosen alphabet are rejected
+        new Base64StreamEncoder(Base64Alphabet.STANDARD, true, 76, "-");
+        try {
+            new Base64StreamEncoder(Base64Alphabet.URL_SAFE, true, 76, "-");
+            Assert.fail();
+        } catch (IllegalArgumentException ex) {
+        }
+        try {
+            new Base64StreamEncoder(Base64Alphabet.STANDARD, true, 3, "\n");
+            Assert.fail();
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+
+    @Test
+    public void testDecodeLines() throws IOException {
+        Random random = new Random(4711);
+        for (int len = 0; len < 1000; len += 7) {
+            byte[] data = new byte[len];
+            random.nextBytes(data);
+            String base64 = new String(java.util.Base64.getMimeEncoder(16 + 4 * random.nextInt(20), new byte[]{'\r', '\n'}).encode(data), "US-ASCII");
+            byte[] bytes = base64.getBytes("US-ASCII");
+
+            Assert.assertArrayEquals(data, new Base64StreamDecoder().decode(base64));
+            Assert.assertArrayEquals(data, new Base64StreamDecoder().decode(bytes));
+            Assert.assertArrayEquals(data, new Base64StreamDecoder().decode(base64.toCharArray()));
+            Assert.assertArrayEquals(data, decodeNIO(bytes, false));
+            Assert.assertArrayEquals(data, decodeNIO(bytes, true));
+
+            ByteBuffer out = ByteBuffer.allocate(len);
+            Base64NIODecoder decoder = new Base64NIODecoder();
+            int split = random.nextInt(bytes.length + 1);
+            decoder.decode(bytes, 0, split, out);
+            decoder.decode(base64.toCharArray(), split, bytes.length - split, out);
+            decoder.checkComplete();
+            Assert.assertArrayEquals(data, out.array());
+        }
+    }
+
+    @Test
+    public void testDecodeBuffers() throws IOException {
+        Random random = new Random(99);
+        byte[] data = new byte[5000];
+        random.nextBytes(data);
+        String base64 = new Base64StreamEncoder().encode(data);
+        for (boolean direct : new boolean[]{false, true}) {
+            ByteBuffer out = direct ? ByteBuffer.allocateDirect(data.length) : ByteBuffer.allocate(data.length);
+
+            CharBuffer in = CharBuffer.wrap(base64);
+            new Base64NIODecoder().decode(in, out);
+            Assert.assertFalse(in.hasRemaining());
+            Assert.assertFalse(out.hasRemaining());
+            byte[] actual = new byte[data.length];
+            out.flip();
+            out.get(actual);
+            Assert.assertArrayEquals(data, actual);
+
+            out.clear();
+            ByteBuffer bytes = ByteBuffer.wrap(("  " + base64).getBytes("US-ASCII"));
+            bytes.position(2);
+            new Base64NIODecoder().decode(bytes, out);
+            Assert.assertFalse(bytes.hasRemaining());
+            out.flip();
+            out.get(actual);
+            Assert.assertArrayEquals(data, actual);
+
+            out.clear();
+            out.limit(data.length - 1);
+            try {
+                new Base64NIODecoder().decode(base64.toCharArray(), 0, base64.length(), out);
+                Assert.fail();
+            } catch (BufferOverflowException ex) {
+                Assert.assertTrue(out.position() >= data.length - 3);
+            }
+        }
+    }
+
+    @Test(expected = InvalidCharacterException.class)
+    public void testInvalidBlock() throws IOException {
+        new Base64StreamDecoder().decode("SGFsbG8gV2VsdA\u0141=");
+    }
+
+    @Test
+    public void testEncodeBytes() throws IOException {
+        Random random = new Random(7);
+        for (int len = 0; len < 1000; len += 11) {
+            byte[] data = new byte[len];
+            random.nextBytes(data);
+            String expected = new Base64StreamEncoder().encode(data);
+
+            byte[] out = new byte[expected.length()];
+            Base64StreamEncoder encoder = new Base64StreamEncoder();
+            int split = random.nextInt(len + 1);
+            int pos = encoder.encode(data, 0, split, out, 0);
+            pos += encoder.encode(data, split, len - split, out, pos);
+            pos += encoder.encodeFinal(out, pos);
+            Assert.assertEquals(out.length, pos);
+            Assert.assertEquals(expected, new String(out, "US-ASCII"));
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(expected.length());
+            encoder = new Base64StreamEncoder();
+            int count = encoder.encode(data, 0, len, buffer);
+            count += encoder.encodeFinal(buffer);
+            Assert.assertEquals(expected.length(), count);
+            buffer.flip();
+            byte[] actual = new byte[buffer.remaining()];
+            buffer.get(actual);
+            Assert.assertEquals(expected, new String(actual, "US-ASCII"));
+        }
+    }
+
+    @Test
+    public void testEncodeAppendables() throws IOException {
+        Random random = new Random(3);
+        byte[] data = new byte[20000];
+        random.nextBytes(data);
+        String expected = new Base64StreamEncoder().encode(data);
+
+        StringBuilder builder = new StringBuilder();
+        new Base64StreamEncoder().encode(data, builder);
+        Assert.assertEquals(expected, builder.toString());
+
+        StringBuffer buffer = new StringBuffer();
+        new Base64StreamEncoder().encode(data, buffer);
+        Assert.assertEquals(expected, buffer.toString());
+
+        java.io.StringWriter writer = new java.io.StringWriter();
+        new Base64StreamEncoder().encode(data, writer);
+        Assert.assertEquals(expected, writer.toString());
+
+        CharBuffer chars = CharBuffer.allocate(expected.length());
+        new Base64StreamEncoder().encode(data, chars);
+        chars.flip();
+        Assert.assertEquals(expected, chars.toString());
+
+        final StringBuilder target = new StringBuilder();
+        Appendable other = new Appendable() {
+            public Appendable append(CharSequence csq) {
+                target.append(csq);
+                return this;
+            }
+
+            public Appendable append(CharSequence csq, int start, int end) {
+                target.append(csq, start, end);
+                return this;
+            }
+
+            public Appendable append(char c) {
+                target.append(c);
+                return this;
+            }
+        };
+        new Base64StreamEncoder().encode(data, other);
+        Assert.assertEquals(expected, target.toString());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testEncodeBytesCapacity() {
+        new Base64StreamEncoder().encode(new byte[100], 0, 100, new byte[100], 0);
+    }
+
+    @Test
+    public void testSwarKernel() {
+        for (Base64Tables tables : new Base64Tables[]{Base64Tables.STANDARD, Base64Tables.URL_SAFE}) {
+            String alphabet = new String(tables.alphabet);
+            SwarKernel kernel = (SwarKernel)tables.swar;
+            Random random = new Random(1234);
+            for (int i = 0; i < 10000; i++) {
+                long bits = random.nextLong() >>> 16;
+                long chars = 0;
+                for (int j = 7; j >= 0; j--) {
+                    chars = chars << 8 | alphabet.charAt((int)(bits >>> (6 * j)) & 63);
+                }
+                Assert.assertEquals(chars, kernel.encode(bits));
+                Assert.assertEquals(bits, kernel.decode(chars));
+            }
+            long valid = kernel.encode(0x123456789ABCL);
+            for (int ch = 0; ch < 256; ch++) {
+                for (int lane = 0; lane < 8; lane++) {
+                    long chars = (valid & ~(0xFFL << (8 * lane))) | ((long)ch << (8 * lane));
+                    Assert.assertEquals(alphabet.indexOf(ch) < 0, kernel.decode(chars) < 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testKernels() throws IOException {
+        Random random = new Random(815);
+        List<Base64Kernel> kernels = new ArrayList<Base64Kernel>(Arrays.asList(KernelSelector.TABLE, KernelSelector.WIDE,
+                KernelSelector.SWAR, Base64Tables.URL_SAFE.table, Base64Tables.URL_SAFE.wide, Base64Tables.URL_SAFE.swar));
+        // only there when the tests run on java 17 with the multi-release classes and jdk.incubator.vector
+        if (KernelSelector.VECTOR != null) {
+            kernels.add(KernelSelector.VECTOR);
+            kernels.add(Base64Tables.URL_SAFE.vector);
+        }
+        for (int len = 0; len < 300; len += 3) {
+            byte[] data = new byte[len];
+            random.nextBytes(data);
+            String standard = java.util.Base64.getEncoder().encodeToString(data);
+            String url = java.util.Base64.getUrlEncoder().encodeToString(data);
+            ByteBuffer direct = ByteBuffer.allocateDirect(len);
+            direct.put(data).clear();
+            int groups = len / 3;
+            for (Base64Kernel kernel : kernels) {
+                String expected = ((TableKernel)kernel).tables == Base64Tables.URL_SAFE ? url : standard;
+                byte[] ascii = expected.getBytes("US-ASCII");
+                ByteBuffer directAscii = ByteBuffer.allocateDirect(ascii.length);
+                directAscii.put(ascii).clear();
+                char[] chars = new char[groups * 4];
+                kernel.encode(data, 0, groups, chars, 0);
+                Assert.assertEquals(kernel.name(), expected, new String(chars));
+                kernel.encode(direct, 0, groups, chars, 0);
+                Assert.assertEquals(kernel.name(), expected, new String(chars));
+                byte[] bytes = new byte[groups * 4 + 2];
+                kernel.encode(data, 0, groups, bytes, 1);
+                Assert.assertEquals(kernel.name(), expected, new String(bytes, 1, groups * 4, "US-ASCII"));
+                Assert.assertEquals(0, bytes[groups * 4 + 1]);
+                ByteBuffer directOut = ByteBuffer.allocateDirect(groups * 4).order(ByteOrder.LITTLE_ENDIAN);
+                kernel.encode(direct, 0, groups, directOut, 0);
+                Assert.assertEquals(0, directOut.position());
+                directOut.get(bytes, 0, groups * 4);
+                Assert.assertEquals(kernel.name(), expected, new String(bytes, 0, groups * 4, "US-ASCII"));
+
+                byte[] out = new byte[len];
+                Assert.assertEquals(groups, kernel.decode(ascii, 0, groups, out, 0));
+                Assert.assertArrayEquals(kernel.name(), data, out);
+                Assert.assertEquals(groups, kernel.decode(expected.toCharArray(), 0, groups, out, 0));
+                Assert.assertArrayEquals(kernel.name(), data, out);
+                Assert.assertEquals(groups, kernel.decode(expected, 0, groups, out, 0));
+                Assert.assertArrayEquals(kernel.name(), data, out);
+                Assert.assertEquals(groups, kernel.decode(directAscii, 0, groups, out, 0));
+                Assert.assertArrayEquals(kernel.name(), data, out);
+
+                if (groups > 0) {
+                    int invalid = random.nextInt(ascii.length);
+                    byte[] copy = ascii.clone();
+                    copy[invalid] = '=';
+                    Assert.assertEquals(kernel.name(), invalid / 4, kernel.decode(copy, 0, groups, out, 0));
+                    copy[invalid] = (byte)0xC1;
+                    Assert.assertEquals(kernel.name(), invalid / 4, kernel.decode(copy, 0, groups, out, 0));
+                    char[] chars2 = expected.toCharArray();
+                    chars2[invalid] = '\u0141';
+                    Assert.assertEquals(kernel.name(), invalid / 4, kernel.decode(chars2, 0, groups, out, 0));
+                }
+            }
+        }
+        Assert.assertSame(KernelSelector.SWAR, KernelSelector.forName("SWAR"));
+        Assert.assertNull(KernelSelector.forName(null));
+        if (KernelSelector.VECTOR != null) {
+            Assert.assertSame(KernelSelector.VECTOR, KernelSelector.forName("vector"));
+            Assert.assertSame(KernelSelector.VECTOR, KernelSelector.forArray(Base64Tables.STANDARD, 1 << 20));
+        }
+    }
+
+    @Test
+    public void testDecodeArrays() throws IOException {
+        Random random = new Random(7);
+        for (int len = 0; len < 40; len++) {
+            byte[] data = new byte[len];
+            random.nextBytes(data);
+            String base64 = java.util.Base64.getMimeEncoder(8, new byte[]{'\n'}).encodeToString(data);
+            Assert.assertArrayEquals(data, new Base64StreamDecoder().decode(base64));
+            Assert.assertArrayEquals(data, new Base64StreamDecoder().decode(base64.toCharArray()));
+            Assert.assertArrayEquals(data, new Base64StreamDecoder().decode(base64.getBytes("US-ASCII")));
+        }
+    }
+
+    @Test
+    public void testStrings() throws IOException {
+        Random random = new Random(21);
+        for (int len = 0; len < 3000; len += 97) {
+            byte[] data = new byte[len];
+            random.nextBytes(data);
+            String base64 = java.util.Base64.getEncoder().encodeToString(data);
+            String mime = java.util.Base64.getMimeEncoder().encodeToString(data);
+            Assert.assertEquals(base64, new Base64StreamEncoder(Base64Alphabet.STANDARD, true).encode(data));
+            Assert.assertEquals(mime, Base64StreamEncoder.mime().encode(data));
+            Assert.assertArrayEquals(data, new Base64StreamDecoder().decode(base64));
+            Assert.assertArrayEquals(data, new Base64StreamDecoder().decode(mime));
+            Assert.assertArrayEquals(data, new Base64StreamDecoder().decode(new StringBuilder(mime)));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new Base64StreamDecoder().decode(mime, out);
+            Assert.assertArrayEquals(data, out.toByteArray());
+
+            // the rest of a partially used encoder
+            Base64StreamEncoder encoder = new Base64StreamEncoder(Base64Alphabet.STANDARD, true);
+            int split = random.nextInt(len + 1);
+            byte[] head = new byte[(int)encoder.outputLength(split)];
+            int pos = encoder.encode(data, 0, split, head, 0);
+            String tail = encoder.encode(Arrays.copyOfRange(data, split, len));
+            Assert.assertEquals(base64, new String(head, 0, pos, "US-ASCII") + tail);
+        }
+        String longInvalid = java.util.Base64.getEncoder().encodeToString(new byte[3000]) + "AAA\u0100";
+        try {
+            new Base64StreamDecoder().decode(longInvalid);
+            Assert.fail();
+        } catch (InvalidCharacterException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testExactLengths() throws IOException {
+        Random random = new Random(22);
+        Base64StreamEncoder[] encoders = {
+                new Base64StreamEncoder(), Base64StreamEncoder.mime(),
+                new Base64StreamEncoder(Base64Alphabet.URL_SAFE, false),
+                new Base64StreamEncoder(Base64Alphabet.STANDARD, true, 8, " \r\n")};
+        for (int len = 0; len < 300; len += 7) {
+            byte[] data = new byte[len];
+            random.nextBytes(data);
+            for (int i = 0; i < encoders.length; i++) {
+                Base64StreamEncoder encoder = encoders[i];
+                encoder.reset();
+                // continue after a partial group
+                int split = random.nextInt(len + 1);
+                byte[] head = new byte[(int)encoder.outputLength(split)];
+                int headLength = encoder.encode(data, 0, split, head, 0);
+                long expected = encoder.encodedLength(len - split);
+                byte[] out = new byte[(int)expected + 5];
+                Assert.assertEquals(expected, encoder.encodeInto(data, split, len - split, out, 5));
+                String encoded = new String(head, 0, headLength, "US-ASCII") + new String(out, 5, (int)expected, "US-ASCII");
+                encoder.reset();
+                Assert.assertEquals(encoder.encode(data), encoded);
+                encoder.reset();
+                char[] chars = new char[encoded.length()];
+                Assert.assertEquals(encoded.length(), encoder.encodeInto(data, chars, 0));
+                Assert.assertEquals(encoded, new String(chars));
+                encoder.reset();
+                if (len > 0) {
+                    try {
+                        encoder.encodeInto(data, new byte[(int)encoder.encodedLength(len) - 1], 0);
+                        Assert.fail();
+                    } catch (IndexOutOfBoundsException ex) {
+                        // nothing was consumed
+                        Assert.assertEquals(encoded.length(), encoder.encodedLength(len));
+                    }
+                }
+
+                Base64StreamDecoder decoder = new Base64StreamDecoder(i == 2 ? Base64Alphabet.URL_SAFE : Base64Alphabet.STANDARD, i != 2);
+                Assert.assertEquals(len, decoder.decodedLength(encoded));
+                Assert.assertEquals(len, decoder.decodedLength(encoded.toCharArray()));
+                Assert.assertEquals(len, decoder.decodedLength(encoded.getBytes("US-ASCII")));
+                byte[] decoded = new byte[len + 3];
+                Assert.assertEquals(len, decoder.decodeInto(encoded, decoded, 3));
+                Assert.assertArrayEquals(data, Arrays.copyOfRange(decoded, 3, len + 3));
+                decoder = new Base64StreamDecoder(i == 2 ? Base64Alphabet.URL_SAFE : Base64Alphabet.STANDARD, i != 2);
+                Assert.assertEquals(len, decoder.decodeInto(encoded.getBytes("US-ASCII"), decoded, 0));
+                Assert.assertArrayEquals(data, Arrays.copyOf(decoded, len));
+                if (len > 0) {
+                    decoder = new Base64StreamDecoder(i == 2 ? Base64Alphabet.URL_SAFE : Base64Alphabet.STANDARD, i != 2);
+                    byte[] small = new byte[len - 1];
+                    try {
+                        decoder.decodeInto(encoded.toCharArray(), small, 0);
+                        Assert.fail();
+                    } catch (IndexOutOfBoundsException ex) {
+                        Assert.assertArrayEquals(new byte[len - 1], small);
+                    }
+                }
+            }
+        }
+        // padding in the middle ends a group, continuing decoders count their partial group
+        Base64StreamDecoder decoder = new Base64StreamDecoder();
+        Assert.assertEquals(3, decoder.decodedLength("QQ==\nQUI="));
+        Assert.assertArrayEquals(new byte[]{'A', 'A', 'B'}, decoder.decode("QQ==\nQUI="));
+        decoder = new Base64StreamDecoder();
+        decoder.decode("QUJ".toCharArray(), 0, 3);
+        Assert.assertEquals(3, decoder.decodedLength("D"));
+        Assert.assertEquals(6, decoder.decodedLength("DQUJD"));
+        decoder = new Base64StreamDecoder(Base64Alphabet.STANDARD, false);
+        Assert.assertArrayEquals(new byte[]{'A', 'B'}, decoder.decode("QUJ".toCharArray(), 0, 3));
+        Assert.assertEquals(1, decoder.decodedLength("D"));
+        Assert.assertEquals(0, decoder.decodedLength("="));
+    }
+
+    @Test
+    public void testParallel() throws IOException {
+        Random random = new Random(11);
+        for (int len : new int[]{0, 1, 2, 56, 57, 58, 1000, 4567, 20000}) {
+            byte[] data = new byte[len];
+            random.nextBytes(data);
+            String expected = new Base64StreamEncoder().encode(data);
+
+            Base64StreamEncoder encoder = new Base64StreamEncoder();
+            encoder.setParallelThreshold(0);
+            Assert.assertEquals(expected, encoder.encodeParallel(data));
+
+            encoder = new Base64StreamEncoder();
+            encoder.setParallelThreshold(0);
+            ByteBuffer in = ByteBuffer.allocateDirect(len);
+            in.put(data).flip();
+            ByteBuffer out = ByteBuffer.allocateDirect(expected.length());
+            encoder.encodeParallel(in, out);
+            encoder.encodeFinal(out);
+            Assert.assertFalse(in.hasRemaining());
+            Assert.assertFalse(out.hasRemaining());
+            byte[] actual = new byte[expected.length()];
+            out.flip();
+            out.get(actual);
+            Assert.assertEquals(expected, new String(actual, "US-ASCII"));
+
+            Base64StreamDecoder decoder = new Base64StreamDecoder();
+            decoder.setParallelThreshold(0);
+            Assert.assertArrayEquals(data, decoder.decodeParallel(expected.getBytes("US-ASCII")));
+            in = ByteBuffer.allocateDirect(expected.length() + 2);
+            in.put((" " + expected + " ").getBytes("US-ASCII")).flip();
+            Assert.assertArrayEquals(data, decoder.decodeParallel(in));
+            Assert.assertFalse(in.hasRemaining());
+        }
+
+        // continues the current line of a partially used encoder
+        byte[] data = new byte[3000];
+        random.nextBytes(data);
+        Base64StreamEncoder sequential = new Base64StreamEncoder();
+        Base64StreamEncoder parallel = new Base64StreamEncoder();
+        parallel.setParallelThreshold(0);
+        byte[] expected = new byte[5000];
+        byte[] actual = new byte[5000];
+        int expectedLen = sequential.encode(data, 0, 100, expected, 0);
+        int actualLen = parallel.encode(data, 0, 100, actual, 0);
+        expectedLen += sequential.encode(data, 100, 2900, expected, expectedLen);
+        actualLen += parallel.encodeParallel(data, 100, 2900, actual, actualLen);
+        Assert.assertEquals(expectedLen, actualLen);
+        Assert.assertArrayEquals(expected, actual);
+
+        // segments of narrow lines written in place into a little endian direct buffer
+        sequential = new Base64StreamEncoder(Base64Alphabet.STANDARD, true, 8, "\r\n");
+        parallel = new Base64StreamEncoder(Base64Alphabet.STANDARD, true, 8, "\r\n");
+        parallel.setParallelThreshold(0);
+        expectedLen = sequential.encode(data, 0, data.length, expected, 0);
+        ByteBuffer in = ByteBuffer.allocateDirect(data.length);
+        in.put(data).flip();
+        ByteBuffer out = ByteBuffer.allocateDirect(expectedLen).order(ByteOrder.LITTLE_ENDIAN);
+        Assert.assertEquals(expectedLen, parallel.encodeParallel(in, out));
+        out.flip();
+        out.get(actual, 0, expectedLen);
+        Assert.assertArrayEquals(Arrays.copyOf(expected, expectedLen), Arrays.copyOf(actual, expectedLen));
+
+        // inputs the parallel decoder leaves to the state machine
+        Base64StreamDecoder decoder = new Base64StreamDecoder();
+        decoder.setParallelThreshold(0);
+        Assert.assertArrayEquals(new byte[]{'A', 'B'}, decoder.decodeParallel("QQ==Qg==".getBytes("US-ASCII")));
+        try {
+            decoder.decodeParallel("QUJDRA".getBytes("US-ASCII"));
+            Assert.fail();
+        } catch (IncompleteStreamException ex) {
+        }
+        decoder = new Base64StreamDecoder();
+        decoder.setParallelThreshold(0);
+        try {
+            decoder.decodeParallel("QUJD\nRE*G".getBytes("US-ASCII"));
+            Assert.fail();
+        } catch (InvalidCharacterException ex) {
+        }
+    }
+
+    @Test
+    public void testParallelUnpaddedState() throws IOException {
+        Random random = new Random(29);
+        for (int len = 1000; len < 1006; len++) {
+            byte[] data = new byte[len];
+            random.nextBytes(data);
+            // ends in the middle of a group for lengths that are not a multiple of 3
+            byte[] in = java.util.Base64.getUrlEncoder().withoutPadding().encode(data);
+            Base64StreamDecoder sequential = new Base64StreamDecoder(Base64Alphabet.URL_SAFE, false);
+            Base64StreamDecoder parallel = new Base64StreamDecoder(Base64Alphabet.URL_SAFE, false);
+            parallel.setParallelThreshold(0);
+            Assert.assertArrayEquals(sequential.decode(new String(in, "US-ASCII")), parallel.decodeParallel(in));
+            Assert.assertEquals(sequential.isComplete(), parallel.isComplete());
+            // a later call continues the partial group
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            byte[] more = "QUJD=".getBytes("US-ASCII");
+            sequential.decode(more, 0, 1, expected);
+            parallel.decode(more, 0, 1, actual);
+            Assert.assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+            Assert.assertEquals(sequential.isComplete(), parallel.isComplete());
+        }
+    }
+
+    @Test
+    public void testDirectBuffers() throws IOException {
+        Random random = new Random(23);
+        for (ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            for (int len : new int[]{0, 1, 2, 3, 17, 100, 1001}) {
+                byte[] data = new byte[len];
+                random.nextBytes(data);
+                // narrow lines and a long separator, continuing after a partial group at odd buffer positions
+                Base64StreamEncoder expectedEncoder = new Base64StreamEncoder(Base64Alphabet.URL_SAFE, true, 9, "\r\n\t");
+                byte[] expected = new byte[(int)expectedEncoder.encodedLength(len)];
+                int expectedLen = expectedEncoder.encode(data, 0, len / 2, expected, 0);
+                expectedLen += expectedEncoder.encode(data, len / 2, len - len / 2, expected, expectedLen);
+                expectedLen += expectedEncoder.encodeFinal(expected, expectedLen);
+
+                Base64StreamEncoder encoder = new Base64StreamEncoder(Base64Alphabet.URL_SAFE, true, 9, "\r\n\t");
+                ByteBuffer in = ByteBuffer.allocateDirect(len + 3).order(order);
+                in.position(3);
+                in.put(data);
+                in.position(3);
+                ByteBuffer out = ByteBuffer.allocateDirect(expectedLen + 5).order(order);
+                out.position(5);
+                for (int part : new int[]{len / 2, len - len / 2}) {
+                    ByteBuffer slice = in.duplicate();
+                    slice.limit(in.position() + part);
+                    encoder.encode(slice, out);
+                    in.position(slice.position());
+                }
+                encoder.encodeFinal(out);
+                Assert.assertFalse(out.hasRemaining());
+                byte[] actual = new byte[expectedLen];
+                out.position(5);
+                out.get(actual);
+                Assert.assertEquals(new String(expected, "US-ASCII"), new String(actual, "US-ASCII"));
+
+                // array input written into the direct buffer with absolute puts
+                encoder = new Base64StreamEncoder(Base64Alphabet.URL_SAFE, true, 9, "\r\n\t");
+                out.clear();
+                out.position(5);
+                int written = encoder.encode(data, 0, len / 2, out);
+                written += encoder.encode(data, len / 2, len - len / 2, out);
+                encoder.encodeFinal(out);
+                Assert.assertFalse(out.hasRemaining());
+                out.position(5);
+                out.get(actual);
+                Assert.assertEquals(new String(expected, "US-ASCII"), new String(actual, "US-ASCII"));
+                if (written > 0) {
+                    out.clear();
+                    out.position(5);
+                    out.limit(5 + written - 1);
+                    try {
+                        new Base64StreamEncoder(Base64Alphabet.URL_SAFE, true, 9, "\r\n\t").encode(data, 0, len, out);
+                        Assert.fail();
+                    } catch (BufferOverflowException ex) {
+                        Assert.assertEquals(5, out.position());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testParallelFiles() throws IOException {
+        File data = File.createTempFile("base64", ".bin");
+        File encoded = File.createTempFile("base64", ".txt");
+        File decoded = File.createTempFile("base64", ".bin");
+        try {
+            Random random = new Random(13);
+            for (int len : new int[]{0, 1, 57, 58, 10000, 100001}) {
+                byte[] bytes = new byte[len];
+                random.nextBytes(bytes);
+                java.nio.file.Files.write(data.toPath(), bytes);
+
+                Base64StreamEncoder encoder = new Base64StreamEncoder();
+                encoder.setParallelThreshold(0);
+                encoder.encodeParallel(data, encoded);
+                String expected = new Base64StreamEncoder().encode(bytes);
+                Assert.assertEquals(expected, new String(java.nio.file.Files.readAllBytes(encoded.toPath()), "US-ASCII"));
+
+                Base64NIODecoder decoder = new Base64NIODecoder();
+                decoder.setParallelThreshold(0);
+                decoder.decodeParallel(encoded, decoded);
+                Assert.assertArrayEquals(bytes, java.nio.file.Files.readAllBytes(decoded.toPath()));
+            }
+        } finally {
+            data.delete();
+            encoded.delete();
+            decoded.delete();
+        }
+    }
+
+    @Test
+    public void testFileLongSeparator() throws IOException {
+        File data = File.createTempFile("base64", ".bin");
+        File encoded = File.createTempFile("base64", ".txt");
+        try {
+            // reads of odd length leave partial groups, each followed by a separator longer than a group
+            byte[] bytes = new byte[200 * 1024 + 1];
+            new Random(29).nextBytes(bytes);
+            java.nio.file.Files.write(data.toPath(), bytes);
+            new Base64StreamEncoder(Base64Alphabet.STANDARD, true, 8, " \r\n \r\n \r\n").encode(data, encoded);
+            String expected = java.util.Base64.getMimeEncoder(8, " \r\n \r\n \r\n".getBytes("US-ASCII")).encodeToString(bytes);
+            Assert.assertEquals(expected, new String(java.nio.file.Files.readAllBytes(encoded.toPath()), "US-ASCII"));
+        } finally {
+            data.delete();
+            encoded.delete();
+        }
+    }
+
+    @Test
+    public void testMappedFiles() throws IOException {
+        File data = File.createTempFile("base64", ".bin");
+        File encoded = File.createTempFile("base64", ".txt");
+        File decoded = File.createTempFile("base64", ".bin");
+        try {
+            Random random = new Random(17);
+            for (int len : new int[]{0, 1, 2, 57, 100001}) {
+                byte[] bytes = new byte[len];
+                random.nextBytes(bytes);
+                java.nio.file.Files.write(data.toPath(), bytes);
+
+                new Base64StreamEncoder().encodeMapped(data, encoded);
+                String expected = new Base64StreamEncoder().encode(bytes);
+                Assert.assertEquals(expected, new String(java.nio.file.Files.readAllBytes(encoded.toPath()), "US-ASCII"));
+
+                new Base64NIODecoder().decodeMapped(encoded, decoded, 1000, true);
+                Assert.assertArrayEquals(bytes, java.nio.file.Files.readAllBytes(decoded.toPath()));
+            }
+        } finally {
+            data.delete();
+            encoded.delete();
+            decoded.delete();
+        }
+    }
+
+    @Test
+    public void testOutputStream() throws IOException {
+        Random random = new Random(19);
+        byte[] data = new byte[50000];
+        random.nextBytes(data);
+        String expected = new Base64StreamEncoder().encode(data);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        StringBuilder chars = new StringBuilder();
+        OutputStream[] streams = {new Base64OutputStream(new Base64StreamEncoder(), bytes, 100), new Base64OutputStream(chars)};
+        for (OutputStream out : streams) {
+            int pos = 0;
+            while (pos < data.length) {
+                int len = Math.min(data.length - pos, random.nextInt(300));
+                if (len == 1) {
+                    out.write(data[pos]);
+                } else {
+                    out.write(data, pos, len);
+                }
+                pos += len;
+            }
+            out.close();
+        }
+        Assert.assertEquals(expected, new String(bytes.toByteArray(), "US-ASCII"));
+        Assert.assertEquals(expected, chars.toString());
+
+        // complete groups are visible after a flush in low latency mode
+        bytes.reset();
+        Base64OutputStream out = new Base64OutputStream(bytes);
+        out.setLowLatency(true);
+        out.write(data, 0, 30);
+        out.flush();
+        Assert.assertEquals(expected.substring(0, 40), new String(bytes.toByteArray(), "US-ASCII"));
+        out.write(data, 30, 2);
+        out.close();
+        Assert.assertEquals(new Base64StreamEncoder().encode(Arrays.copyOf(data, 32)), new String(bytes.toByteArray(), "US-ASCII"));
+    }
+
+    @Test
+    public void testOutputStreamLargeWrite() throws IOException {
+        Random random = new Random(23);
+        byte[] data = new byte[100000];
+        random.nextBytes(data);
+        final int[] maxWrite = new int[1];
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                maxWrite[0] = Math.max(maxWrite[0], len);
+                super.write(b, off, len);
+            }
+        };
+        // a single byte first, so the slices of the large write start in the middle of a group
+        Base64OutputStream out = new Base64OutputStream(Base64StreamEncoder.mime(), bytes, 100);
+        out.write(data, 0, 1);
+        out.write(data, 1, data.length - 1);
+        out.close();
+        Assert.assertEquals(Base64StreamEncoder.mime().encode(data), new String(bytes.toByteArray(), "US-ASCII"));
+        // the large write reaches the target in encoded slices of at most 100 bytes each
+        Assert.assertTrue(String.valueOf(maxWrite[0]), maxWrite[0] <= 4 * 102 / 3 + 6);
+    }
+
     @Test
     public void testCharacterName() {
         Assert.assertEquals("\\r", Base64Exception.characterName('\r'));
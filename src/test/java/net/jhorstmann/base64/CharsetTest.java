@@ -1,8 +1,19 @@
 package net.jhorstmann.base64;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
 import java.util.Random;
 import org.junit.Assert;
 import org.junit.Test;
@@ -125,4 +136,99 @@ public class CharsetTest {
         }
     }
 
+    @Test
+    public void testBuffers() throws IOException {
+        Random random = new Random(23);
+        byte[] data = new byte[3000];
+        random.nextBytes(data);
+        String base64 = new Base64StreamEncoder().encode(data);
+        Charset cs = Charset.forName("BASE64");
+        for (int size : new int[]{3, 4, 5, 7, 77, 1000}) {
+            for (boolean direct : new boolean[]{false, true}) {
+                ByteBuffer in = direct ? ByteBuffer.allocateDirect(data.length) : ByteBuffer.allocate(data.length);
+                in.put(data).flip();
+                CharsetDecoder decoder = cs.newDecoder();
+                CharBuffer out = CharBuffer.allocate(size);
+                StringBuilder chars = new StringBuilder();
+                while (true) {
+                    int remaining = out.remaining();
+                    CoderResult result = decoder.decode(in, out, true);
+                    Assert.assertTrue(result.isUnderflow() || out.remaining() < 3);
+                    Assert.assertTrue(result.isOverflow() || !in.hasRemaining());
+                    Assert.assertTrue(out.remaining() < remaining || result.isUnderflow());
+                    out.flip();
+                    chars.append(out);
+                    out.clear();
+                    if (result.isUnderflow()) {
+                        break;
+                    }
+                }
+                while (decoder.flush(out).isOverflow()) {
+                }
+                out.flip();
+                chars.append(out);
+                Assert.assertEquals(base64, chars.toString());
+
+                CharBuffer encoded = CharBuffer.wrap(base64);
+                CharsetEncoder encoder = cs.newEncoder();
+                ByteBuffer bytes = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+                ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+                CoderResult result;
+                do {
+                    result = encoder.encode(encoded, bytes, true);
+                    Assert.assertTrue(result.isUnderflow() || bytes.remaining() < 3);
+                    bytes.flip();
+                    while (bytes.hasRemaining()) {
+                        decoded.write(bytes.get());
+                    }
+                    bytes.clear();
+                } while (result.isOverflow());
+                assertEquals(data, decoded.toByteArray());
+            }
+        }
+    }
+
+    @Test
+    public void testReaderWriter() throws IOException {
+        // InputStreamReader does not flush the decoder, so the length avoids padding
+        byte[] data = new byte[99999];
+        new Random(29).nextBytes(data);
+        String base64 = new Base64StreamEncoder().encode(data);
+
+        Reader reader = new InputStreamReader(new ByteArrayInputStream(data), "BASE64");
+        StringBuilder chars = new StringBuilder();
+        char[] buf = new char[1000];
+        int len;
+        while ((len = reader.read(buf)) != -1) {
+            chars.append(buf, 0, len);
+        }
+        Assert.assertEquals(base64, chars.toString());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Writer writer = new OutputStreamWriter(bytes, "BASE64");
+        writer.write(base64);
+        writer.close();
+        assertEquals(data, bytes.toByteArray());
+    }
+
+    @Test
+    public void testFamily() throws IOException {
+        Assert.assertSame(Charset.forName("BASE64URL"), Charset.forName("base64-url"));
+        Assert.assertSame(Charset.forName("BASE64-MIME"), Charset.forName("MIME-BASE64"));
+        Assert.assertTrue(Charset.forName("BASE64").contains(Charset.forName("BASE64-MIME")));
+        Assert.assertFalse(Charset.forName("BASE64").contains(Charset.forName("BASE64URL")));
+
+        Random random = new Random(31);
+        for (int len = 0; len < 400; len += 7) {
+            byte[] data = new byte[len];
+            random.nextBytes(data);
+            String url = java.util.Base64.getUrlEncoder().encodeToString(data);
+            String mime = java.util.Base64.getMimeEncoder().encodeToString(data);
+            Assert.assertEquals(url, new String(data, "BASE64URL"));
+            assertEquals(data, url.getBytes("BASE64URL"));
+            assertEquals(data, url.replace("=", "").getBytes("BASE64URL"));
+            Assert.assertEquals(mime, new String(data, "BASE64-MIME"));
+            assertEquals(data, mime.getBytes("BASE64-MIME"));
+        }
+    }
 }